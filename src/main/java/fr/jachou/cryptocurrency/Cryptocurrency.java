@@ -74,9 +74,69 @@ public final class Cryptocurrency extends JavaPlugin {
         int timeout = getConfig().getInt("api.timeout_ms", 4000);
         int retry = getConfig().getInt("api.retry", 1);
         priceService.configureHttp(timeout, retry);
+        priceService.configureExecutor(
+                getConfig().getString("api.executor.type", "virtual"),
+                getConfig().getInt("api.executor.threads", 8),
+                getConfig().getInt("api.executor.queue_size", 256));
+        priceService.configureTransport(getConfig().getString("api.transport", "httpclient"));
+        priceService.setSource(fr.jachou.cryptocurrency.services.PriceSource.fromConfig(
+                getConfig().getConfigurationSection("api"), getDataFolder(), priceService.getHttp(), timeout, priceService.getCoinRegistry(),
+                priceService.getAsyncExecutor()));
+        // Liste complète des coins (cache disque), chargée en arrière-plan
+        priceService.getCoinRegistry().load(
+                new File(getDataFolder(), getConfig().getString("api.coins.cache_file", "coins.tsv")),
+                getConfig().getLong("api.coins.ttl_hours", 24L) * 3_600_000L,
+                getConfig().getInt("api.coins.market_pages", 4),
+                timeout);
+        priceService.configureBackoff(
+                getConfig().getInt("api.backoff.base_ms", 200),
+                getConfig().getInt("api.backoff.max_ms", 2000));
+        priceService.configureHedging(
+                getConfig().getBoolean("api.hedging.enabled", false),
+                getConfig().getBoolean("api.hedging.trade_only", true),
+                getConfig().getDouble("api.hedging.quantile", 0.95),
+                getConfig().getInt("api.hedging.min_delay_ms", 150));
+        String hedgeSource = getConfig().getString("api.hedging.secondary_source", "");
+        if (hedgeSource != null && !hedgeSource.isBlank()) {
+            priceService.setHedgeSource(fr.jachou.cryptocurrency.services.PriceSource.create(hedgeSource,
+                    getConfig().getConfigurationSection("api"), getDataFolder(), priceService.getHttp(), timeout, priceService.getCoinRegistry(),
+                    priceService.getAsyncExecutor()));
+        }
         int errTh = getConfig().getInt("api.circuit_breaker.error_threshold", 5);
         int openSec = getConfig().getInt("api.circuit_breaker.open_seconds", 30);
-        priceService.configureCircuitBreaker(errTh, openSec);
+        int windowSec = getConfig().getInt("api.circuit_breaker.window_seconds", 60);
+        double errRate = getConfig().getDouble("api.circuit_breaker.error_rate", 0.5);
+        priceService.configureCircuitBreaker(errTh, openSec, windowSec, errRate);
+        priceService.configureRateLimit(
+                getConfig().getBoolean("api.rate_limit.enabled", true),
+                getConfig().getInt("api.rate_limit.requests_per_minute", 25),
+                getConfig().getInt("api.rate_limit.burst", 10));
+        priceService.configureCache(
+                getConfig().getInt("api.cache.ttl_seconds", 60),
+                getConfig().getBoolean("api.cache.refresh_ahead", true),
+                getConfig().getInt("api.cache.refresh_ahead_seconds", 10),
+                getConfig().getInt("api.cache.max_stale_seconds", 300));
+        priceService.configureAdaptiveTtl(
+                getConfig().getBoolean("api.cache.adaptive.enabled", true),
+                getConfig().getInt("api.cache.adaptive.min_seconds", 15),
+                getConfig().getInt("api.cache.adaptive.max_seconds", 300),
+                getConfig().getDouble("api.cache.adaptive.target_move_pct", 0.25));
+        priceService.configureNegativeCache(getConfig().getInt("api.cache.negative_ttl_seconds", 600));
+        priceService.startRefreshAhead(this);
+        priceService.configureStream(
+                getConfig().getBoolean("api.stream.enabled", false),
+                getConfig().getString("api.stream.url", "wss://stream.binance.com:9443/ws/!miniTicker@arr"),
+                getConfig().getString("api.stream.quote", "USDT"),
+                getConfig().getInt("api.stream.max_backoff_seconds", 60));
+        priceService.getEvents().bind(this, getConfig().getInt("api.events.coalesce_ticks", 10));
+
+        // Instantané du cache : prix servis dès le démarrage, rafraîchis ensuite
+        if (getConfig().getBoolean("api.snapshot.enabled", true)) {
+            File snapshot = new File(getDataFolder(), getConfig().getString("api.snapshot.file", "prices.dat"));
+            int restored = priceService.loadSnapshot(snapshot);
+            if (restored > 0) getLogger().info("[Crypto] " + restored + " prix restaurés depuis " + snapshot.getName() + " (à rafraîchir).");
+            priceService.startSnapshots(this, snapshot, getConfig().getInt("api.snapshot.save_seconds", 300));
+        }
 
         // Load wallets from file
         walletManager.loadFromFile(walletsFile);
@@ -85,9 +145,22 @@ public final class Cryptocurrency extends JavaPlugin {
         int retention = getConfig().getInt("chart.retention_points", 360);
         int sample = getConfig().getInt("chart.sample_seconds", 60);
         timeseriesService.configure(retention, sample);
+        timeseriesService.configureIndicators(getConfig().getStringList("chart.indicators"));
+        if (getConfig().getBoolean("chart.store.enabled", true)) {
+            int loaded = timeseriesService.openStore(new File(getDataFolder(), "series"), getConfig().getInt("chart.store.retention_days", 30));
+            if (loaded > 0) getLogger().info("[Crypto] " + loaded + " points d'historique relus depuis le disque.");
+        }
         java.util.List<String> enabled = getConfig().getStringList("market.enabled_symbols");
         if (enabled == null || enabled.isEmpty()) enabled = java.util.Arrays.asList("BTC","ETH","SOL","DOGE");
-        timeseriesService.startSampler(enabled);
+        // Historique récupéré avant le premier échantillon, pour pouvoir combler les trous sur disque
+        int backfillDays = getConfig().getInt("chart.backfill.days", 1);
+        java.util.List<String> sampled = enabled;
+        timeseriesService.backfill(enabled, backfillDays)
+                .completeOnTimeout(0, 30, java.util.concurrent.TimeUnit.SECONDS)
+                .whenComplete((points, ex) -> {
+                    if (points != null && points > 0) getLogger().info("[Crypto] " + points + " points d'historique récupérés.");
+                    if (isEnabled()) timeseriesService.startSampler(sampled);
+                });
 
         guiManager = new fr.jachou.cryptocurrency.gui.GuiManager(this, priceService, walletManager, timeseriesService);
         getServer().getPluginManager().registerEvents(guiManager, this);
@@ -152,6 +225,7 @@ public final class Cryptocurrency extends JavaPlugin {
         if (timeseriesService != null) {
             timeseriesService.stop();
         }
+        priceService.shutdown();
 
     }
 
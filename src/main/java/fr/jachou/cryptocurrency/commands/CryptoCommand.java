@@ -1,7 +1,9 @@
 package fr.jachou.cryptocurrency.commands;
 
 import fr.jachou.cryptocurrency.Cryptocurrency;
+import fr.jachou.cryptocurrency.services.CoinRegistry;
 import fr.jachou.cryptocurrency.services.PriceService;
+import fr.jachou.cryptocurrency.services.RateLimiter;
 import fr.jachou.cryptocurrency.services.WalletManager;
 import fr.jachou.cryptocurrency.util.Messages;
 import org.bukkit.Bukkit;
@@ -15,7 +17,6 @@ import net.milkbowl.vault.economy.Economy;
 import net.milkbowl.vault.economy.EconomyResponse;
 
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class CryptoCommand implements CommandExecutor, TabCompleter {
@@ -61,18 +62,25 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
                 PriceService price = plugin.getPriceService();
                 if (args.length < 2) { sender.sendMessage(Messages.f("usage.price", "&eUsage: /{label} price <symbole...>", java.util.Map.of("label", label))); return true; }
 
-                // Un message par symbole, sans bloquer
-                for (int i = 1; i < args.length; i++) {
-                    final String sym = args[i];
-                    price.getPriceUsd(sym)
-                            .thenAccept(p -> runSync(() ->
-                                    sender.sendMessage(Cryptocurrency.PREFIX + "§7" + sym.toUpperCase(Locale.ROOT) + " §f= §a$" + fmt2(p))
-                            ))
-                            .exceptionally(ex -> {
-                                runSync(() -> sender.sendMessage(Cryptocurrency.PREFIX + "§cImpossible de récupérer le prix de " + sym.toUpperCase(Locale.ROOT) + " : " + ex.getMessage()));
-                                return null;
-                            });
+                // Un seul appel groupé, puis un message par symbole, sans bloquer
+                List<String> syms = new ArrayList<>();
+                for (String s : Arrays.asList(args).subList(1, args.length)) {
+                    if (price.isKnownSymbol(s)) syms.add(s);
+                    else sender.sendMessage(Messages.f("unknown_symbol", "&cSymbole inconnu : {symbol}", java.util.Map.of("symbol", s.toUpperCase(Locale.ROOT))));
                 }
+                if (syms.isEmpty()) return true;
+                price.getPricesUsd(syms)
+                        .thenAccept(prices -> runSync(() -> {
+                            for (String sym : syms) {
+                                Double p = prices.get(sym.toLowerCase(Locale.ROOT));
+                                if (p != null) sender.sendMessage(Cryptocurrency.PREFIX + "§7" + sym.toUpperCase(Locale.ROOT) + " §f= §a$" + fmt2(p));
+                                else sender.sendMessage(Cryptocurrency.PREFIX + Messages.f("price.unavailable", "&cAucun prix disponible pour {symbol}.", java.util.Map.of("symbol", sym.toUpperCase(Locale.ROOT))));
+                            }
+                        }))
+                        .exceptionally(ex -> {
+                            runSync(() -> sender.sendMessage(Cryptocurrency.PREFIX + "§cImpossible de récupérer le prix de " + String.join(", ", syms).toUpperCase(Locale.ROOT) + " : " + ex.getMessage()));
+                            return null;
+                        });
                 return true;
             }
             case "buy", "sell" -> {
@@ -83,8 +91,9 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
                 final String sym = args[1];
                 final double amount;
                 try { amount = Double.parseDouble(args[2]); } catch (Exception e) { sender.sendMessage(Messages.t("invalid_amount", "&cMontant invalide.")); return true; }
+                if (!plugin.getPriceService().isKnownSymbol(sym)) { sender.sendMessage(Messages.f("unknown_symbol", "&cSymbole inconnu : {symbol}", java.util.Map.of("symbol", sym.toUpperCase(Locale.ROOT)))); return true; }
 
-                plugin.getPriceService().getPriceUsd(sym)
+                plugin.getPriceService().getPriceUsd(sym, RateLimiter.Priority.TRADE)
                         .thenAccept(priceUsd -> {
                             double usd = priceUsd * amount;
                             runSync(() -> {
@@ -170,7 +179,7 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
                         .exceptionally(ex -> {
                             runSync(() -> sender.sendMessage(Cryptocurrency.PREFIX + Messages.f("price.error", "&cErreur prix {symbol} : {error}", java.util.Map.of(
                                     "symbol", sym.toUpperCase(java.util.Locale.ROOT),
-                                    "error", ex.getMessage() == null ? "" : ex.getMessage()
+                                    "error", errorText(ex)
                             ))));
                             return null;
                         });
@@ -262,22 +271,34 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
                 if (args.length >= 4) range = args[3];
 
                 var ts = plugin.getTimeseriesService();
-                var series = ts != null ? ts.getSeries(sym, points, range) : java.util.Collections.<fr.jachou.cryptocurrency.services.PriceTimeseriesService.PricePoint>emptyList();
+                var series = ts != null ? ts.read(sym, points, range, new fr.jachou.cryptocurrency.services.SeriesView()) : new fr.jachou.cryptocurrency.services.SeriesView();
                 if (series.isEmpty()) {
                     // Hydrate async: trigger price fetch and inform user
                     plugin.getPriceService().refreshAsync(sym);
                     sender.sendMessage(Cryptocurrency.PREFIX + Messages.f("chart.hydrating", "&7Hydratation de la série en cours pour &e{symbol}&7... Réessaie dans quelques secondes.", java.util.Map.of("symbol", sym)));
                     return true;
                 }
-                java.util.List<Double> vals = series.stream().map(p -> p.price()).toList();
-                fr.jachou.cryptocurrency.util.ChartFormatter.Stats st = fr.jachou.cryptocurrency.util.ChartFormatter.stats(vals);
+                double[] vals = series.closes();
+                fr.jachou.cryptocurrency.util.ChartFormatter.Stats st = fr.jachou.cryptocurrency.util.ChartFormatter.stats(vals, series.size());
                 String glyphs = plugin.getConfig().getString("chart.sparkline_chars", "▁▂▃▄▅▆▇█");
-                String spark = fr.jachou.cryptocurrency.util.ChartFormatter.sparkline(vals, glyphs);
+                String spark = fr.jachou.cryptocurrency.util.ChartFormatter.sparkline(vals, series.size(), glyphs);
                 String header = String.format(java.util.Locale.US, "§e%s §7— %d pts — Min $%s / Max $%s — Δ%% %+.2f", sym, st.points, fr.jachou.cryptocurrency.util.ChartFormatter.fmt2(st.min), fr.jachou.cryptocurrency.util.ChartFormatter.fmt2(st.max), st.deltaPct);
-                Double lastPrice = vals.isEmpty() ? null : vals.get(vals.size()-1);
-                String line2 = "§8" + spark + (lastPrice != null ? " §7$" + fr.jachou.cryptocurrency.util.ChartFormatter.fmt2(lastPrice) : "");
+                String line2 = "§8" + spark + " §7$" + fr.jachou.cryptocurrency.util.ChartFormatter.fmt2(st.last);
                 sender.sendMessage(Cryptocurrency.PREFIX + header);
                 sender.sendMessage(line2);
+                // Une ligne par indicateur : dernière valeur et ses dernières valeurs en sparkline
+                double[] hist = new double[24];
+                for (fr.jachou.cryptocurrency.services.Indicator ind : ts.getIndicators(sym)) {
+                    double v = ind.value();
+                    if (Double.isNaN(v)) continue;
+                    String value = ind.isOscillator() ? String.format(java.util.Locale.US, "%.1f", v) : "$" + fr.jachou.cryptocurrency.util.ChartFormatter.fmt2(v);
+                    double upper = ind.value("upper"), lower = ind.value("lower");
+                    if (!Double.isNaN(upper) && !Double.isNaN(lower)) {
+                        value += " §8[§7$" + fr.jachou.cryptocurrency.util.ChartFormatter.fmt2(lower) + " §8– §7$" + fr.jachou.cryptocurrency.util.ChartFormatter.fmt2(upper) + "§8]";
+                    }
+                    int n = ind.history(hist);
+                    sender.sendMessage("§7" + ind.name().toUpperCase(java.util.Locale.ROOT) + " §f" + value + " §8" + fr.jachou.cryptocurrency.util.ChartFormatter.sparkline(hist, n, glyphs));
+                }
                 return true;
             }
             case "api" -> {
@@ -305,6 +326,59 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
                     sender.sendMessage(Cryptocurrency.PREFIX + Messages.f("api.status", 
                         "&7État de l'API: {status}{status_name}", 
                         java.util.Map.of("status", statusColor, "status_name", status.name())));
+                    sender.sendMessage(Messages.f("api.stats",
+                        "&7Requêtes HTTP: &f{requests} &7| Coalescées: &f{coalesced} &7| En cours: &f{inflight} &7| Lectures rejetées: &f{rejected} &7(cache négatif: &f{negative}&7)",
+                        java.util.Map.of(
+                            "requests", String.valueOf(ps.getNetworkCalls()),
+                            "coalesced", String.valueOf(ps.getCoalescedCalls()),
+                            "inflight", String.valueOf(ps.getInFlightCount()),
+                            "rejected", String.valueOf(ps.getRejectedLookups()),
+                            "negative", String.valueOf(ps.getNegativeCacheSize()))));
+                    var rl = ps.getRateLimiter();
+                    sender.sendMessage(Messages.f("api.rate_limit",
+                        "&7Jetons: &f{tokens} &7| Refusés trade/cmd/sampler/placeholder: &f{trade}/{command}/{sampler}/{placeholder}",
+                        java.util.Map.of(
+                            "tokens", String.format(Locale.US, "%.1f", rl.getAvailableTokens()),
+                            "trade", String.valueOf(rl.getDenied(RateLimiter.Priority.TRADE)),
+                            "command", String.valueOf(rl.getDenied(RateLimiter.Priority.COMMAND)),
+                            "sampler", String.valueOf(rl.getDenied(RateLimiter.Priority.SAMPLER)),
+                            "placeholder", String.valueOf(rl.getDenied(RateLimiter.Priority.PLACEHOLDER)))));
+                    var cb = ps.getCircuitBreaker();
+                    sender.sendMessage(Messages.f("api.breaker",
+                        "&7Circuit breaker: &f{state} &7| Échecs (fenêtre): &f{failures} &7| Ouvertures: &f{opened} &7| Half-open: &f{half_opened} &7| Fermetures: &f{closed} &7| Rejets: &f{rejected}",
+                        java.util.Map.of(
+                            "state", cb.getState().name(),
+                            "failures", String.valueOf(cb.getWindowFailures()),
+                            "opened", String.valueOf(cb.getOpenedCount()),
+                            "half_opened", String.valueOf(cb.getHalfOpenedCount()),
+                            "closed", String.valueOf(cb.getClosedCount()),
+                            "rejected", String.valueOf(cb.getRejectedCount()))));
+                    sender.sendMessage(Messages.f("api.source", "&7Source des prix: &f{source} &7({health})",
+                        java.util.Map.of("source", ps.getSource().getName(), "health", ps.getSource().getHealth().name())));
+                    var io = ps.getIoExecutor();
+                    sender.sendMessage(Messages.f("api.executor",
+                        "&7Executor I/O: &f{type} &7| Actives: &f{active} &7| En file: &f{queued} &7| Rejetées: &f{rejected}",
+                        java.util.Map.of(
+                            "type", io.getType().name(),
+                            "active", String.valueOf(io.getActiveTasks()),
+                            "queued", String.valueOf(io.getQueueDepth()),
+                            "rejected", String.valueOf(io.getRejectedTasks()))));
+                    sender.sendMessage(Messages.f("api.hedging",
+                        "&7Latence p{quantile}: &f{latency} ms &7| Requêtes couvertes: &f{hedged} &7| Gagnées par la couverture: &f{wins}",
+                        java.util.Map.of(
+                            "quantile", String.valueOf(Math.round(ps.getHedgeQuantile() * 100)),
+                            "latency", String.valueOf(ps.getLatency().quantile(ps.getHedgeQuantile())),
+                            "hedged", String.valueOf(ps.getHedgedCalls()),
+                            "wins", String.valueOf(ps.getHedgeWins()))));
+                    var stream = ps.getStream();
+                    if (stream != null) {
+                        sender.sendMessage(Messages.f("api.stream",
+                            "&7Flux: &f{state} &7| Messages: &f{messages} &7| Reconnexions: &f{reconnects}",
+                            java.util.Map.of(
+                                "state", stream.isConnected() ? "CONNECTED" : "DISCONNECTED",
+                                "messages", String.valueOf(stream.getMessageCount()),
+                                "reconnects", String.valueOf(stream.getReconnectCount()))));
+                    }
                 } else if (subCmd.equals("refresh")) {
                     if (args.length < 3) {
                         sender.sendMessage(Messages.f("usage.api.refresh", 
@@ -325,7 +399,7 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
                     })).exceptionally(ex -> {
                         runSync(() -> sender.sendMessage(Cryptocurrency.PREFIX + Messages.f("api.refresh.failed", 
                             "&cÉchec du rafraîchissement: {error}", 
-                            java.util.Map.of("error", ex.getMessage() == null ? "" : ex.getMessage()))));
+                            java.util.Map.of("error", errorText(ex)))));
                         return null;
                     });
                 } else {
@@ -350,7 +424,7 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
 
     /**
      * Affiche le portefeuille de façon ASYNCHRONE :
-     * - récupère tous les prix en parallèle
+     * - récupère tous les prix en une requête groupée
      * - calcule la valeur totale
      * - envoie le résultat sur le main thread
      */
@@ -366,15 +440,8 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
 
         PriceService ps = plugin.getPriceService();
 
-        // Pour chaque symbole, on prépare un Future prix
-        Map<String, CompletableFuture<Double>> priceFutures = new HashMap<>();
-        for (String sym : wallet.keySet()) {
-            priceFutures.put(sym, ps.getPriceUsd(sym));
-        }
-
-        // Quand tous les prix sont prêts, on assemble l'affichage
-        CompletableFuture<Void> all = CompletableFuture.allOf(priceFutures.values().toArray(new CompletableFuture[0]));
-        all.thenRun(() -> {
+        // Un seul appel groupé pour tous les symboles du portefeuille
+        ps.getPricesUsd(wallet.keySet()).thenAccept(prices -> {
             String owner = (name == null ? uuid.toString() : name);
             StringBuilder lines = new StringBuilder();
             double totalUsd = 0.0;
@@ -382,13 +449,17 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
             for (Map.Entry<String, Double> entry : wallet.entrySet()) {
                 String sym = entry.getKey();
                 double qty = entry.getValue();
-                Double priceUsd = priceFutures.get(sym).getNow(1.0); // getNow: non bloquant, car allOf est déjà résolu
+                Double priceUsd = prices.get(sym.toLowerCase(Locale.ROOT));
+                lines.append("§7").append(sym.toUpperCase(Locale.ROOT))
+                        .append(" : §f").append(fmt4(qty));
+                if (priceUsd == null) {
+                    // Pas de prix connu : la ligne est affichée mais ne compte pas dans le total
+                    lines.append(" §8(~$?)\n");
+                    continue;
+                }
                 double usd = priceUsd * qty;
                 totalUsd += usd;
-
-                lines.append("§7").append(sym.toUpperCase(Locale.ROOT))
-                        .append(" : §f").append(fmt4(qty))
-                        .append(" §8(~$").append(fmt2(usd)).append(")\n");
+                lines.append(" §8(~$").append(fmt2(usd)).append(")\n");
             }
 
             String msgHeader = Cryptocurrency.PREFIX + Messages.f("balance.header", "&ePortefeuille de &f{player} :", java.util.Map.of("player", owner));
@@ -417,15 +488,23 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
             ));
             return filter(list, args[0]);
         }
-        if (args.length == 2) {
-            String sub = args[0].toLowerCase(Locale.ROOT);
-            if (sub.equals("price") || sub.equals("buy") || sub.equals("sell") || sub.equals("chart")) {
-                return filter(Arrays.asList("BTC","ETH","SOL","DOGE"), args[1]);
-            }
-        }
+        String sub = args[0].toLowerCase(Locale.ROOT);
+        boolean symbolArg = (args.length == 2 && (sub.equals("buy") || sub.equals("sell") || sub.equals("chart") || sub.equals("convert")))
+                || (args.length == 3 && sub.equals("convert"))
+                || (args.length >= 2 && sub.equals("price"));
+        if (symbolArg) return completeSymbol(args[args.length - 1]);
         return Collections.emptyList();
     }
 
+    /** Symboles du registre des coins (index par préfixe), ou ceux du marché tant qu'il n'est pas chargé. */
+    private List<String> completeSymbol(String token) {
+        CoinRegistry coins = plugin.getPriceService().getCoinRegistry();
+        if (coins.isLoaded()) return coins.complete(token, 50);
+        List<String> enabled = plugin.getConfig().getStringList("market.enabled_symbols");
+        if (enabled == null || enabled.isEmpty()) enabled = Arrays.asList("BTC","ETH","SOL","DOGE");
+        return filter(enabled, token);
+    }
+
     private List<String> filter(List<String> base, String token) {
         String t = token.toLowerCase(Locale.ROOT);
         return base.stream().filter(s -> s.toLowerCase(Locale.ROOT).startsWith(t)).collect(Collectors.toList());
@@ -441,6 +520,12 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
         return String.format(Locale.US, "%,.4f", v);
     }
 
+    /** Message d'erreur lisible, sans l'enveloppe CompletionException. */
+    private static String errorText(Throwable ex) {
+        Throwable cause = ex instanceof java.util.concurrent.CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause.getMessage() == null ? "" : cause.getMessage();
+    }
+
     private void runSync(Runnable r) {
         Bukkit.getScheduler().runTask(plugin, r);
     }
@@ -536,8 +621,8 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
         var top = wm.topByUsdValue(wallet -> {
             double sum = 0.0;
             for (var e : wallet.entrySet()) {
-                Double price = ps.getCachedUsd(e.getKey());
-                if (price == null) { 
+                double price = ps.getCachedUsdOrNaN(e.getKey());
+                if (Double.isNaN(price)) { 
                     ps.refreshAsync(e.getKey()); 
                     continue; 
                 }
@@ -584,6 +669,12 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
         
         String fromSym = args[1].toUpperCase(Locale.ROOT);
         String toSym = args[2].toUpperCase(Locale.ROOT);
+        for (String s : List.of(fromSym, toSym)) {
+            if (!plugin.getPriceService().isKnownSymbol(s)) {
+                sender.sendMessage(Messages.f("unknown_symbol", "&cSymbole inconnu : {symbol}", java.util.Map.of("symbol", s)));
+                return true;
+            }
+        }
         double amount;
         try { 
             amount = Double.parseDouble(args[3]); 
@@ -609,13 +700,17 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
         }
         
         PriceService ps = plugin.getPriceService();
-        CompletableFuture<Double> fromPriceFuture = ps.getPriceUsd(fromSym);
-        CompletableFuture<Double> toPriceFuture = ps.getPriceUsd(toSym);
-        
-        CompletableFuture.allOf(fromPriceFuture, toPriceFuture)
-            .thenRun(() -> runSync(() -> {
-                double fromPrice = fromPriceFuture.getNow(1.0);
-                double toPrice = toPriceFuture.getNow(1.0);
+        ps.getPricesUsd(List.of(fromSym, toSym), RateLimiter.Priority.TRADE)
+            .thenAccept(prices -> runSync(() -> {
+                Double fromKnown = prices.get(fromSym.toLowerCase(Locale.ROOT));
+                Double toKnown = prices.get(toSym.toLowerCase(Locale.ROOT));
+                if (fromKnown == null || toKnown == null) {
+                    sender.sendMessage(Cryptocurrency.PREFIX + Messages.f("price.unavailable", "&cAucun prix disponible pour {symbol}.",
+                        java.util.Map.of("symbol", fromKnown == null ? fromSym : toSym)));
+                    return;
+                }
+                double fromPrice = fromKnown;
+                double toPrice = toKnown;
                 
                 if (toPrice == 0.0) {
                     sender.sendMessage(Cryptocurrency.PREFIX + Messages.f("convert.invalid_target", 
@@ -794,10 +889,13 @@ public class CryptoCommand implements CommandExecutor, TabCompleter {
             int retention = plugin.getConfig().getInt("chart.retention_points", 360);
             int sample = plugin.getConfig().getInt("chart.sample_seconds", 60);
             plugin.getTimeseriesService().configure(retention, sample);
+            plugin.getTimeseriesService().configureIndicators(plugin.getConfig().getStringList("chart.indicators"));
             
             java.util.List<String> enabled = plugin.getConfig().getStringList("market.enabled_symbols");
             if (enabled == null || enabled.isEmpty()) enabled = java.util.Arrays.asList("BTC","ETH","SOL","DOGE");
             plugin.getTimeseriesService().startSampler(enabled);
+            // Symboles nouvellement activés : historique en arrière-plan
+            plugin.getTimeseriesService().backfill(enabled, plugin.getConfig().getInt("chart.backfill.days", 1));
         }
         
         sender.sendMessage(Cryptocurrency.PREFIX + Messages.t("reload.ok", "&aConfiguration rechargée."));
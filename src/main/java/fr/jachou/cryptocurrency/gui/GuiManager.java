@@ -1,7 +1,9 @@
 package fr.jachou.cryptocurrency.gui;
 
 import fr.jachou.cryptocurrency.Cryptocurrency;
+import fr.jachou.cryptocurrency.services.PriceEventBus;
 import fr.jachou.cryptocurrency.services.PriceService;
+import fr.jachou.cryptocurrency.services.PriceTick;
 import fr.jachou.cryptocurrency.services.PriceTimeseriesService;
 import fr.jachou.cryptocurrency.services.WalletManager;
 import org.bukkit.Bukkit;
@@ -34,11 +36,35 @@ public class GuiManager implements Listener {
     private final Map<UUID, MarketGui> openMarkets = new HashMap<>();
     private final Map<UUID, SymbolPanel> openPanels = new HashMap<>();
 
+    // Symboles modifiés depuis le dernier redessin (thread principal uniquement)
+    private final Set<String> dirtySymbols = new HashSet<>();
+
     public GuiManager(Cryptocurrency plugin, PriceService priceService, WalletManager walletManager, PriceTimeseriesService tsService) {
         this.plugin = plugin;
         this.priceService = priceService;
         this.walletManager = walletManager;
         this.tsService = tsService;
+        // Redessine les GUIs ouvertes quand un prix change, au lieu d'attendre un clic sur "Rafraîchir"
+        priceService.subscribe(this::onPriceTick, PriceEventBus.DeliveryMode.MAIN_COALESCED);
+    }
+
+    private void onPriceTick(PriceTick tick) {
+        // Plusieurs ticks livrés ensemble -> un seul redessin par GUI
+        if (dirtySymbols.isEmpty()) Bukkit.getScheduler().runTask(plugin, this::redrawDirty);
+        dirtySymbols.add(tick.symbol());
+    }
+
+    private void redrawDirty() {
+        // Le marché affiche la valeur totale du portefeuille : il est redessiné à chaque changement
+        for (Map.Entry<UUID, MarketGui> e : openMarkets.entrySet()) {
+            Player p = Bukkit.getPlayer(e.getKey());
+            if (p != null) e.getValue().refresh(p);
+        }
+        for (Map.Entry<UUID, SymbolPanel> e : openPanels.entrySet()) {
+            Player p = Bukkit.getPlayer(e.getKey());
+            if (p != null && dirtySymbols.contains(e.getValue().getSymbol().toLowerCase(Locale.ROOT))) e.getValue().refresh(p);
+        }
+        dirtySymbols.clear();
     }
 
     public void registerPanel(UUID uuid, SymbolPanel panel) {
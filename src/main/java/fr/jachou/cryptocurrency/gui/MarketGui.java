@@ -3,6 +3,7 @@ package fr.jachou.cryptocurrency.gui;
 import fr.jachou.cryptocurrency.Cryptocurrency;
 import fr.jachou.cryptocurrency.services.PriceService;
 import fr.jachou.cryptocurrency.services.PriceTimeseriesService;
+import fr.jachou.cryptocurrency.services.SeriesView;
 import fr.jachou.cryptocurrency.services.WalletManager;
 import fr.jachou.cryptocurrency.util.ChartFormatter;
 import org.bukkit.Bukkit;
@@ -16,7 +17,6 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class MarketGui {
 
@@ -24,6 +24,8 @@ public class MarketGui {
     private final PriceService priceService;
     private final WalletManager walletManager;
     private final PriceTimeseriesService tsService;
+    // Réutilisée pour chaque sparkline (rendu sur le main thread)
+    private final SeriesView sparkView = new SeriesView();
 
     private Inventory inv;
     private List<String> symbols;
@@ -39,6 +41,11 @@ public class MarketGui {
 
     public boolean owns(Inventory other) { return inv != null && other == inv; }
 
+    /** Redessine l'inventaire ouvert (ex : après un changement de prix). */
+    public void refresh(Player viewer) {
+        if (inv != null) draw(viewer);
+    }
+
     public void open(Player p) {
         this.inv = Bukkit.createInventory(p, 54, ChatColor.translateAlternateColorCodes('&', plugin.getConfig().getString("market.gui_title", "&6Crypto Market")));
         this.symbols = plugin.getConfig().getStringList("market.enabled_symbols");
@@ -86,7 +93,9 @@ public class MarketGui {
         inv.setItem(53, named(Material.SUNFLOWER, ChatColor.YELLOW + "Rafraîchir"));
         inv.setItem(45, named(Material.ARROW, ChatColor.GRAY + "Page précédente"));
         inv.setItem(46, named(Material.ARROW, ChatColor.GRAY + "Page suivante"));
-        inv.setItem(49, named(Material.EMERALD, ChatColor.GOLD + "Valeur totale: $" + totalUsd(viewer)));
+        // Symboles sans prix en cache : un seul rafraîchissement groupé pour toute la grille
+        Set<String> missing = new HashSet<>();
+        inv.setItem(49, named(Material.EMERALD, ChatColor.GOLD + "Valeur totale: $" + totalUsd(viewer, missing)));
 
         // Grid symbols
         for (int i = 0; i < gridSlots.length; i++) {
@@ -96,31 +105,30 @@ public class MarketGui {
                 continue;
             }
             String sym = symbols.get(i).toUpperCase(Locale.ROOT);
-            inv.setItem(slot, buildSymbolItem(viewer, sym));
+            inv.setItem(slot, buildSymbolItem(viewer, sym, missing));
         }
+        priceService.refreshAsync(missing);
     }
 
-    private String totalUsd(Player p) {
+    private String totalUsd(Player p, Set<String> missing) {
         Map<String, Double> w = walletManager.getWallet(p.getUniqueId());
         double total = 0.0;
         for (var e : w.entrySet()) {
-            Double price = priceService.getCachedUsd(e.getKey());
-            if (price == null) { priceService.refreshAsync(e.getKey()); continue; }
+            double price = priceService.getCachedUsdOrNaN(e.getKey());
+            if (Double.isNaN(price)) { missing.add(e.getKey()); continue; }
             total += price * e.getValue();
         }
         return ChartFormatter.fmt2(total);
     }
 
-    private ItemStack buildSymbolItem(Player viewer, String sym) {
-        double price = Optional.ofNullable(priceService.getCachedUsd(sym)).orElse(Double.NaN);
-        if (Double.isNaN(price)) priceService.refreshAsync(sym);
-        List<PriceTimeseriesService.PricePoint> series = tsService.getSeries(sym, 12, "h1");
-        List<Double> vals = series.stream().map(p -> p.price()).collect(Collectors.toList());
-        ChartFormatter.Stats st = ChartFormatter.stats(vals);
+    private ItemStack buildSymbolItem(Player viewer, String sym, Set<String> missing) {
+        double price = priceService.getCachedUsdOrNaN(sym);
+        if (Double.isNaN(price)) missing.add(sym);
+        tsService.read(sym, 12, "h1", sparkView);
         String glyphs = plugin.getConfig().getString("chart.sparkline_chars", "▁▂▃▄▅▆▇█");
-        String spark = ChartFormatter.sparkline(vals, glyphs);
-        double change = st.deltaPct;
-        String changeStr = (change >= 0 ? ChatColor.GREEN : ChatColor.RED) + String.format(Locale.US, "%+.2f%%", change);
+        String spark = ChartFormatter.sparkline(sparkView.closes(), sparkView.size(), glyphs);
+        double change = tsService.getChangePct(sym, "d1");
+        String changeStr = Double.isNaN(change) ? ChatColor.GRAY + "..." : (change >= 0 ? ChatColor.GREEN : ChatColor.RED) + String.format(Locale.US, "%+.2f%%", change);
         double youOwn = walletManager.get(viewer.getUniqueId(), sym);
         double youUsd = (Double.isNaN(price) ? 0.0 : price * youOwn);
 
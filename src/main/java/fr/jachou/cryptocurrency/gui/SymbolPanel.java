@@ -3,6 +3,7 @@ package fr.jachou.cryptocurrency.gui;
 import fr.jachou.cryptocurrency.Cryptocurrency;
 import fr.jachou.cryptocurrency.services.PriceService;
 import fr.jachou.cryptocurrency.services.PriceTimeseriesService;
+import fr.jachou.cryptocurrency.services.RateLimiter;
 import fr.jachou.cryptocurrency.services.WalletManager;
 import fr.jachou.cryptocurrency.util.ChartFormatter;
 import org.bukkit.Bukkit;
@@ -36,6 +37,13 @@ public class SymbolPanel {
 
     public boolean owns(Inventory other) { return inv != null && other == inv; }
 
+    public String getSymbol() { return symbol; }
+
+    /** Redessine le panneau ouvert (ex : après un changement de prix). */
+    public void refresh(Player viewer) {
+        if (inv != null) draw(viewer);
+    }
+
     public void open(Player p) {
         this.inv = Bukkit.createInventory(p, 27, ChatColor.GOLD + symbol + ChatColor.YELLOW + " — Trade");
         draw(p);
@@ -53,12 +61,12 @@ public class SymbolPanel {
                 p.sendMessage(Cryptocurrency.PREFIX + ChatColor.RED + "Vous n’avez pas la permission.");
                 return;
             }
-            priceService.getPriceUsd(symbol).thenAccept(price -> Bukkit.getScheduler().runTask(plugin, () -> {
+            priceService.getPriceUsd(symbol, RateLimiter.Priority.TRADE).thenAccept(price -> Bukkit.getScheduler().runTask(plugin, () -> {
                 double costUsd = price * qty;
                 walletManager.add(p.getUniqueId(), symbol, qty);
                 p.sendMessage(Cryptocurrency.PREFIX + ChatColor.GREEN + "Achat simulé: " + String.format(Locale.US, "%,.4f", qty) + " " + symbol + ChatColor.GRAY + " (~$" + ChartFormatter.fmt2(costUsd) + ")");
                 draw(p);
-            })).exceptionally(ex -> { Bukkit.getScheduler().runTask(plugin, () -> p.sendMessage(Cryptocurrency.PREFIX + ChatColor.RED + "Erreur prix: " + ex.getMessage())); return null; });
+            })).exceptionally(ex -> { Bukkit.getScheduler().runTask(plugin, () -> p.sendMessage(Cryptocurrency.PREFIX + ChatColor.RED + "Erreur prix: " + (ex.getCause() != null ? ex.getCause() : ex).getMessage())); return null; });
             return;
         }
         if (slot == 12) { qty = 0.01; draw(p); return; }
@@ -75,7 +83,7 @@ public class SymbolPanel {
                 p.sendMessage(Cryptocurrency.PREFIX + ChatColor.RED + "Vous n’avez pas la permission.");
                 return;
             }
-            priceService.getPriceUsd(symbol).thenAccept(price -> Bukkit.getScheduler().runTask(plugin, () -> {
+            priceService.getPriceUsd(symbol, RateLimiter.Priority.TRADE).thenAccept(price -> Bukkit.getScheduler().runTask(plugin, () -> {
                 double have = walletManager.get(p.getUniqueId(), symbol);
                 double sellQty = Math.min(qty, have);
                 if (sellQty <= 0.0) { p.sendMessage(Cryptocurrency.PREFIX + ChatColor.RED + "Quantité insuffisante."); return; }
@@ -83,21 +91,19 @@ public class SymbolPanel {
                 double usd = price * sellQty;
                 p.sendMessage(Cryptocurrency.PREFIX + ChatColor.GREEN + "Vente simulée: " + String.format(Locale.US, "%,.4f", sellQty) + " " + symbol + ChatColor.GRAY + " (~$" + ChartFormatter.fmt2(usd) + ")");
                 draw(p);
-            })).exceptionally(ex -> { Bukkit.getScheduler().runTask(plugin, () -> p.sendMessage(Cryptocurrency.PREFIX + ChatColor.RED + "Erreur prix: " + ex.getMessage())); return null; });
+            })).exceptionally(ex -> { Bukkit.getScheduler().runTask(plugin, () -> p.sendMessage(Cryptocurrency.PREFIX + ChatColor.RED + "Erreur prix: " + (ex.getCause() != null ? ex.getCause() : ex).getMessage())); return null; });
         }
     }
 
     private void draw(Player viewer) {
-        double price = Optional.ofNullable(priceService.getCachedUsd(symbol)).orElse(Double.NaN);
+        double price = priceService.getCachedUsdOrNaN(symbol);
         if (Double.isNaN(price)) priceService.refreshAsync(symbol);
-        List<PriceTimeseriesService.PricePoint> series = tsService.getSeries(symbol, 24, "h1");
-        List<Double> vals = series.stream().map(p -> p.price()).toList();
-        ChartFormatter.Stats st = ChartFormatter.stats(vals);
+        double change = tsService.getChangePct(symbol, "h1");
 
         inv.clear();
         inv.setItem(4, named(Material.GOLD_INGOT, ChatColor.YELLOW + symbol));
         inv.setItem(10, named(Material.PAPER, ChatColor.GRAY + "Prix: " + ChatColor.GREEN + "$" + (Double.isNaN(price) ? "..." : ChartFormatter.fmt2(price))));
-        inv.setItem(11, named(Material.PAPER, ChatColor.GRAY + "Δ: " + (st.deltaPct >= 0 ? ChatColor.GREEN : ChatColor.RED) + String.format(Locale.US, "%+.2f%%", st.deltaPct)));
+        inv.setItem(11, named(Material.PAPER, ChatColor.GRAY + "Δ: " + (Double.isNaN(change) ? ChatColor.GRAY + "..." : (change >= 0 ? ChatColor.GREEN : ChatColor.RED) + String.format(Locale.US, "%+.2f%%", change))));
 
         inv.setItem(12, named(Material.LIGHT_WEIGHTED_PRESSURE_PLATE, ChatColor.YELLOW + "+0.01"));
         inv.setItem(13, named(Material.HEAVY_WEIGHTED_PRESSURE_PLATE, ChatColor.YELLOW + "+0.1"));
@@ -1,6 +1,7 @@
 package fr.jachou.cryptocurrency.placeholders;
 
 import fr.jachou.cryptocurrency.Cryptocurrency;
+import fr.jachou.cryptocurrency.services.Indicator;
 import fr.jachou.cryptocurrency.services.PriceService;
 import fr.jachou.cryptocurrency.services.WalletManager;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
@@ -47,6 +48,8 @@ public class CryptoPlaceholderExpansion extends PlaceholderExpansion {
      * Placeholders (insensibles à la casse):
      * - %crypto_price_<sym>% -> prix USD (cache) 2 décimales
      * - %crypto_change24_<sym>% -> variation % sur la fenêtre (séries) +/−1.23
+     * - %crypto_<indicateur>_<sym>% -> indicateur configuré (chart.indicators), ex : rsi14_btc, sma20_eth
+     * - %crypto_bb<N>_upper_<sym>% / %crypto_bb<N>_lower_<sym>% -> bandes de Bollinger
      * - %crypto_wallet_<sym>% -> quantité possédée (4 décimales)
      * - %crypto_wallet_usd% -> valeur totale du portefeuille du joueur (USD)
      * - %crypto_top1_name% / %crypto_top1_value% -> meilleur investisseur
@@ -70,11 +73,13 @@ public class CryptoPlaceholderExpansion extends PlaceholderExpansion {
             Map<String, Double> wallet = wm.getWallet(player.getUniqueId());
             if (wallet.isEmpty()) return "0.00";
             double total = 0.0;
+            java.util.List<String> missing = new java.util.ArrayList<>();
             for (Map.Entry<String, Double> e : wallet.entrySet()) {
-                Double price = ps.getCachedUsd(e.getKey());
-                if (price == null) { ps.refreshAsync(e.getKey()); continue; }
+                double price = ps.getCachedUsdOrNaN(e.getKey());
+                if (Double.isNaN(price)) { missing.add(e.getKey()); continue; }
                 total += price * e.getValue();
             }
+            ps.refreshAsync(missing);
             return fmt2(total);
         }
 
@@ -83,8 +88,8 @@ public class CryptoPlaceholderExpansion extends PlaceholderExpansion {
             java.util.List<java.util.Map.Entry<java.util.UUID, Double>> top = wm.topByUsdValue(w -> {
                 double sum = 0.0;
                 for (var e : w.entrySet()) {
-                    Double price = ps.getCachedUsd(e.getKey());
-                    if (price == null) continue;
+                    double price = ps.getCachedUsdOrNaN(e.getKey());
+                    if (Double.isNaN(price)) continue;
                     sum += price * e.getValue();
                 }
                 return sum;
@@ -103,25 +108,19 @@ public class CryptoPlaceholderExpansion extends PlaceholderExpansion {
         if (p.startsWith("price_")) {
             String sym = p.substring("price_".length()).trim().toUpperCase(Locale.ROOT);
             if (sym.isEmpty()) return "";
-            Double price = ps.getCachedUsd(sym);
-            if (price == null) { ps.refreshAsync(sym); return ""; }
+            double price = ps.getCachedUsdOrNaN(sym);
+            if (Double.isNaN(price)) { ps.refreshAsync(sym); return ""; }
             return fmt2(price);
         }
 
-        // change24_<sym> (basé sur séries temporelles; fenêtre approx selon sample_seconds)
+        // change24_<sym> (statistiques glissantes sur 24 h)
         if (p.startsWith("change24_")) {
             String sym = p.substring("change24_".length()).trim().toUpperCase(Locale.ROOT);
             if (sym.isEmpty()) return "";
             var ts = plugin.getTimeseriesService();
             if (ts == null) return "";
-            int sample = Math.max(1, plugin.getConfig().getInt("chart.sample_seconds", 60));
-            int windowPoints = Math.max(2, (int) Math.round(24 * 3600.0 / sample));
-            var list = ts.getSeries(sym, windowPoints, "d1");
-            if (list.size() < 2) return "";
-            double first = list.get(0).price();
-            double last = list.get(list.size()-1).price();
-            if (first == 0.0) return "";
-            double pct = (last - first) / first * 100.0;
+            double pct = ts.getChangePct(sym, "d1");
+            if (Double.isNaN(pct)) return "";
             return String.format(Locale.US, "%+.2f", pct);
         }
 
@@ -133,6 +132,20 @@ public class CryptoPlaceholderExpansion extends PlaceholderExpansion {
             return fmt4(qty);
         }
 
+        // <indicateur>_<sym> / <indicateur>_<composante>_<sym> (ex : rsi14_btc, bb20_upper_btc)
+        var ts = plugin.getTimeseriesService();
+        if (ts != null) {
+            String[] parts = p.split("_");
+            if (parts.length == 2 || parts.length == 3) {
+                Indicator ind = ts.getIndicator(parts[parts.length - 1], parts[0]);
+                if (ind != null) {
+                    double v = parts.length == 3 ? ind.value(parts[1]) : ind.value();
+                    if (Double.isNaN(v)) return "";
+                    return ind.isOscillator() ? String.format(Locale.US, "%.1f", v) : fmt2(v);
+                }
+            }
+        }
+
         return ""; // inconnu -> vide
     }
 
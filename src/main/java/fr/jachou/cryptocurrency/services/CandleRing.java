@@ -0,0 +1,121 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Bougies OHLC d'une résolution donnée (ex : 1 min) dans un tampon circulaire de taille fixe.
+ * Chaque échantillon met à jour la bougie courante en place ou en ouvre une nouvelle ; les échantillons
+ * plus anciens que la bougie courante sont ignorés.
+ * <p>
+ * Même principe que {@link PriceRing} : un seul écrivain, lecteurs sans verrou protégés par un seqlock.
+ */
+public class CandleRing {
+
+    private static final VarHandle SEQ;
+
+    static {
+        try {
+            SEQ = MethodHandles.lookup().findVarHandle(CandleRing.class, "seq", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long resolutionMs;
+    private final int capacity;
+    private final long[] start;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    // Impair pendant une écriture
+    private volatile long seq;
+    // Nombre total de bougies ouvertes depuis la création
+    private volatile long written;
+
+    public CandleRing(long resolutionMs, int capacity) {
+        this.resolutionMs = resolutionMs;
+        this.capacity = Math.max(1, capacity);
+        this.start = new long[this.capacity];
+        this.open = new double[this.capacity];
+        this.high = new double[this.capacity];
+        this.low = new double[this.capacity];
+        this.close = new double[this.capacity];
+    }
+
+    public long resolutionMs() { return resolutionMs; }
+
+    public int capacity() { return capacity; }
+
+    /** Intègre un échantillon en O(1). */
+    public synchronized void add(long ts, double price) {
+        long bucket = ts - Math.floorMod(ts, resolutionMs);
+        long n = written;
+        int last = (int) ((n - 1) % capacity);
+        if (n > 0 && bucket < start[last]) return;
+        long s = seq;
+        SEQ.setVolatile(this, s + 1);
+        VarHandle.storeStoreFence();
+        if (n > 0 && bucket == start[last]) {
+            if (price > high[last]) high[last] = price;
+            if (price < low[last]) low[last] = price;
+            close[last] = price;
+        } else {
+            int slot = (int) (n % capacity);
+            start[slot] = bucket;
+            open[slot] = price;
+            high[slot] = price;
+            low[slot] = price;
+            close[slot] = price;
+            written = n + 1;
+        }
+        SEQ.setRelease(this, s + 2);
+    }
+
+    public int size() {
+        return (int) Math.min(written, capacity);
+    }
+
+    /** Début de la plus ancienne bougie encore gardée, Long.MAX_VALUE si aucune. */
+    public long oldestStart() {
+        while (true) {
+            long s1 = (long) SEQ.getAcquire(this);
+            if ((s1 & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long total = written;
+            long oldest = total == 0 ? Long.MAX_VALUE : start[(int) ((total - Math.min(total, capacity)) % capacity)];
+            VarHandle.loadLoadFence();
+            if ((long) SEQ.getVolatile(this) == s1) return oldest;
+        }
+    }
+
+    /**
+     * Copie les n dernières bougies (de la plus ancienne à la plus récente) au début des tableaux.
+     * @return le nombre de bougies copiées
+     */
+    public int copyLast(int n, long[] startOut, double[] openOut, double[] highOut, double[] lowOut, double[] closeOut) {
+        while (true) {
+            long s1 = (long) SEQ.getAcquire(this);
+            if ((s1 & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long total = written;
+            int count = (int) Math.min(Math.min(n, Math.min(total, capacity)), startOut.length);
+            long first = total - count;
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((first + i) % capacity);
+                startOut[i] = start[slot];
+                openOut[i] = open[slot];
+                highOut[i] = high[slot];
+                lowOut[i] = low[slot];
+                closeOut[i] = close[slot];
+            }
+            VarHandle.loadLoadFence();
+            if ((long) SEQ.getVolatile(this) == s1) return count;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Circuit breaker sans verrou, basé sur un taux d'erreur glissant.
+ * <p>
+ * La fenêtre est découpée en {@link #BUCKETS} tranches de temps. Chaque tranche tient dans un seul long
+ * (époque sur 32 bits, échecs et succès sur 16 bits chacun) mis à jour par CAS, donc exact sous concurrence.
+ * CLOSED -> OPEN quand le nombre d'échecs et le taux d'erreur dépassent les seuils ;
+ * OPEN -> HALF_OPEN après openSeconds, où une seule requête sonde est admise ;
+ * la sonde referme le circuit si elle réussit, le rouvre sinon.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int BUCKETS = 10;
+    private static final long COUNT_MASK = 0xFFFFL;
+
+    private final AtomicInteger state = new AtomicInteger(State.CLOSED.ordinal());
+    private final AtomicLong openUntil = new AtomicLong();
+    private final AtomicLong probeStartedAt = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    // Compteurs de transitions et de rejets
+    private final AtomicLong openedCount = new AtomicLong();
+    private final AtomicLong halfOpenedCount = new AtomicLong();
+    private final AtomicLong closedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private volatile int minFailures = 5;
+    private volatile double errorRate = 0.5;
+    private volatile long openMs = 30_000;
+    private volatile long bucketMs = 6_000;
+
+    public void configure(int minFailures, double errorRate, int openSeconds, int windowSeconds) {
+        this.minFailures = Math.max(1, minFailures);
+        this.errorRate = Math.min(1.0, Math.max(0.01, errorRate));
+        this.openMs = Math.max(1, openSeconds) * 1000L;
+        this.bucketMs = Math.max(1000L, Math.max(1, windowSeconds) * 1000L / BUCKETS);
+    }
+
+    /**
+     * Indique si une requête peut partir. En HALF_OPEN, seul le premier appelant (la sonde) passe ;
+     * si la sonde ne rend jamais compte, une nouvelle sonde est admise après openSeconds.
+     */
+    public boolean allowRequest() {
+        long now = System.currentTimeMillis();
+        State s = getState();
+        if (s == State.CLOSED) return true;
+        if (s == State.OPEN) {
+            if (now >= openUntil.get() && transition(State.OPEN, State.HALF_OPEN)) {
+                halfOpenedCount.incrementAndGet();
+                probeStartedAt.set(now);
+                return true;
+            }
+        } else {
+            long started = probeStartedAt.get();
+            if (now - started >= openMs && probeStartedAt.compareAndSet(started, now)) return true;
+        }
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    /** Rend la sonde admise par {@link #allowRequest} quand la requête n'est finalement pas partie. */
+    public void releaseProbe() {
+        if (getState() == State.HALF_OPEN) probeStartedAt.set(0L);
+    }
+
+    /** Vrai tant que le circuit est ouvert et que le délai n'est pas écoulé (aucune sonde possible). */
+    public boolean isOpen() {
+        return getState() == State.OPEN && System.currentTimeMillis() < openUntil.get();
+    }
+
+    public void onSuccess() {
+        record(false);
+        if (transition(State.HALF_OPEN, State.CLOSED)) {
+            closedCount.incrementAndGet();
+            for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0L);
+        }
+    }
+
+    public void onError() {
+        record(true);
+        State s = getState();
+        if (s == State.HALF_OPEN) {
+            open(State.HALF_OPEN);
+        } else if (s == State.CLOSED) {
+            long failures = 0, total = 0;
+            long epoch = System.currentTimeMillis() / bucketMs;
+            for (int i = 0; i < BUCKETS; i++) {
+                long v = buckets.get(i);
+                if (epoch - (v >>> 32) >= BUCKETS) continue; // tranche hors fenêtre
+                long f = (v >>> 16) & COUNT_MASK;
+                failures += f;
+                total += f + (v & COUNT_MASK);
+            }
+            if (failures >= minFailures && failures >= errorRate * total) open(State.CLOSED);
+        }
+    }
+
+    private void open(State from) {
+        openUntil.set(System.currentTimeMillis() + openMs);
+        if (transition(from, State.OPEN)) openedCount.incrementAndGet();
+    }
+
+    private boolean transition(State from, State to) {
+        return state.compareAndSet(from.ordinal(), to.ordinal());
+    }
+
+    private void record(boolean failure) {
+        long epoch = System.currentTimeMillis() / bucketMs;
+        int idx = (int) (epoch % BUCKETS);
+        long inc = failure ? 1L << 16 : 1L;
+        while (true) {
+            long v = buckets.get(idx);
+            long base = (v >>> 32) == (epoch & 0xFFFFFFFFL) ? v : (epoch & 0xFFFFFFFFL) << 32;
+            // Saturation plutôt que débordement sur le champ voisin
+            long field = failure ? (base >>> 16) & COUNT_MASK : base & COUNT_MASK;
+            long next = field == COUNT_MASK ? base : base + inc;
+            if (buckets.compareAndSet(idx, v, next)) return;
+        }
+    }
+
+    /** Nombre d'échecs enregistrés dans la fenêtre glissante. */
+    public long getWindowFailures() {
+        long failures = 0;
+        long epoch = System.currentTimeMillis() / bucketMs;
+        for (int i = 0; i < BUCKETS; i++) {
+            long v = buckets.get(i);
+            if (epoch - (v >>> 32) < BUCKETS) failures += (v >>> 16) & COUNT_MASK;
+        }
+        return failures;
+    }
+
+    public State getState() { return State.values()[state.get()]; }
+
+    public long getOpenedCount() { return openedCount.get(); }
+
+    public long getHalfOpenedCount() { return halfOpenedCount.get(); }
+
+    public long getClosedCount() { return closedCount.get(); }
+
+    public long getRejectedCount() { return rejectedCount.get(); }
+}
@@ -0,0 +1,96 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Source CoinGecko : /simple/price avec tous les ids du lot dans une seule requête,
+ * /coins/{id}/market_chart pour l'historique.
+ */
+public class CoinGeckoPriceSource implements PriceSource {
+
+    private static final String BASE_URL = "https://api.coingecko.com/api/v3";
+
+    private final HttpTransport http;
+    private final int timeoutMs;
+    private final CoinRegistry coins;
+    private volatile boolean lastCallFailed = false;
+
+    public CoinGeckoPriceSource(HttpTransport http, int timeoutMs, CoinRegistry coins) {
+        this.http = http;
+        this.timeoutMs = timeoutMs;
+        this.coins = coins;
+    }
+
+    @Override
+    public String getName() { return "coingecko"; }
+
+    /**
+     * Convertit le symbole en ID CoinGecko (via le registre des coins)
+     */
+    @Override
+    public String resolveId(String symbol) {
+        String id = coins.resolve(symbol);
+        return id != null ? id : symbol.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public boolean isKnown(String symbol) {
+        return coins.isKnown(symbol);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Double>> fetchUsd(List<String> symbols) {
+        // Plusieurs symboles peuvent pointer vers le même id CoinGecko
+        Map<String, List<String>> symbolsById = new LinkedHashMap<>();
+        for (String sym : symbols) {
+            symbolsById.computeIfAbsent(resolveId(sym), k -> new ArrayList<>()).add(sym);
+        }
+        String apiUrl = BASE_URL + "/simple/price?ids=" + String.join(",", symbolsById.keySet()) + "&vs_currencies=usd";
+
+        return http.get(apiUrl, timeoutMs).thenApply(body -> {
+            try (InputStream in = body) {
+                // Décodage en flux : pas de String intermédiaire ni d'arbre JSON
+                Map<String, Double> byId = JsonPriceDecoder.simplePrice(in, "usd");
+                Map<String, Double> prices = new HashMap<>();
+                for (Map.Entry<String, List<String>> e : symbolsById.entrySet()) {
+                    Double price = byId.get(e.getKey());
+                    if (price == null) continue;
+                    for (String sym : e.getValue()) prices.put(sym, price);
+                }
+                return prices;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((prices, ex) -> lastCallFailed = ex != null);
+    }
+
+    @Override
+    public boolean supportsHistory() { return true; }
+
+    /** Granularité décidée par CoinGecko : 5 min jusqu'à 1 jour, 1 h jusqu'à 90 jours. */
+    @Override
+    public CompletableFuture<Integer> fetchHistoryUsd(String symbol, int days, JsonPriceDecoder.PointSink sink) {
+        String apiUrl = BASE_URL + "/coins/" + resolveId(symbol) + "/market_chart?vs_currency=usd&days=" + Math.max(1, days);
+        return http.get(apiUrl, timeoutMs).thenApply(body -> {
+            try (InputStream in = body) {
+                return JsonPriceDecoder.marketChart(in, "prices", sink);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public Health getHealth() {
+        return lastCallFailed ? Health.DEGRADED : Health.UP;
+    }
+}
@@ -0,0 +1,225 @@
+package fr.jachou.cryptocurrency.services;
+
+import fr.jachou.cryptocurrency.util.SymbolTrie;
+import org.bukkit.Bukkit;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Registre des symboles CoinGecko : liste complète des coins (/coins/list), mise en cache sur disque.
+ * Quand plusieurs coins partagent un même ticker, on garde celui qui a la plus grosse capitalisation
+ * (classement /coins/markets), sinon le plus petit id par ordre alphabétique.
+ * Expose un index par préfixe pour l'autocomplétion et la validation des symboles.
+ */
+public class CoinRegistry {
+
+    private static final String BASE_URL = "https://api.coingecko.com/api/v3";
+    private static final String CACHE_HEADER = "# coingecko symbol->id v1";
+    private static final long ACQUIRE_TIMEOUT_MS = 120_000;
+
+    // Correspondances utilisées tant que la liste complète n'est pas chargée
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "btc", "bitcoin",
+            "eth", "ethereum",
+            "sol", "solana",
+            "doge", "dogecoin",
+            "bnb", "binancecoin",
+            "ada", "cardano");
+
+    private final HttpTransport http;
+    private final RateLimiter rateLimiter;
+    private final Executor executor;
+
+    private volatile Map<String, String> ids = DEFAULTS;
+    private volatile SymbolTrie trie = trieOf(DEFAULTS);
+    private volatile boolean loaded = false;
+
+    public CoinRegistry(HttpTransport http, RateLimiter rateLimiter, Executor executor) {
+        this.http = http;
+        this.rateLimiter = rateLimiter;
+        this.executor = executor;
+    }
+
+    /**
+     * Charge le registre depuis le cache disque s'il a moins de ttlMs, sinon depuis CoinGecko
+     * (1 appel pour la liste + marketPages appels pour départager les doublons). En cas d'échec réseau,
+     * un cache expiré reste utilisé.
+     */
+    public CompletableFuture<Void> load(File cacheFile, long ttlMs, int marketPages, int timeoutMs) {
+        if (cacheFile.isFile() && System.currentTimeMillis() - cacheFile.lastModified() < ttlMs) {
+            return CompletableFuture.runAsync(() -> publish(readCache(cacheFile)), executor)
+                    .exceptionallyCompose(ex -> fetchAndStore(cacheFile, marketPages, timeoutMs));
+        }
+        return fetchAndStore(cacheFile, marketPages, timeoutMs);
+    }
+
+    private CompletableFuture<Void> fetchAndStore(File cacheFile, int marketPages, int timeoutMs) {
+        return fetchCoinList(timeoutMs).thenCompose(bySymbol -> {
+            List<String> collisions = new ArrayList<>();
+            for (Map.Entry<String, List<String>> e : bySymbol.entrySet()) {
+                if (e.getValue().size() > 1) collisions.add(e.getKey());
+            }
+            if (collisions.isEmpty()) return CompletableFuture.completedFuture(resolve(bySymbol, Map.of()));
+            return fetchMarketRanks(marketPages, timeoutMs).thenApply(ranks -> resolve(bySymbol, ranks));
+        }).thenAccept(resolved -> {
+            publish(resolved);
+            try {
+                writeCache(cacheFile, resolved);
+            } catch (IOException e) {
+                Bukkit.getLogger().warning("[Crypto] Impossible d'écrire le cache des coins : " + e.getMessage());
+            }
+        }).exceptionally(ex -> {
+            Bukkit.getLogger().warning("[Crypto] Chargement de la liste des coins impossible : " + ex.getMessage());
+            if (!loaded && cacheFile.isFile()) {
+                try {
+                    publish(readCache(cacheFile));
+                } catch (UncheckedIOException ignored) {}
+            }
+            return null;
+        });
+    }
+
+    /** Symbole (minuscules) -> ids CoinGecko portant ce ticker. */
+    private CompletableFuture<Map<String, List<String>>> fetchCoinList(int timeoutMs) {
+        return acquire().thenCompose(v -> http.get(BASE_URL + "/coins/list", timeoutMs)).thenApply(body -> {
+            try (InputStream in = body) {
+                // Plus de 15 000 coins : lecture en flux, seuls "id" et "symbol" sont convertis en String
+                Map<String, List<String>> bySymbol = new HashMap<>(32_768);
+                JsonPriceDecoder.records(in, new String[]{"id", "symbol"}, coin -> {
+                    String id = coin[0];
+                    String sym = coin[1] == null ? "" : coin[1].trim().toLowerCase(Locale.ROOT);
+                    if (id == null || id.isEmpty() || sym.isEmpty() || sym.chars().anyMatch(Character::isWhitespace)) return;
+                    bySymbol.computeIfAbsent(sym, k -> new ArrayList<>(1)).add(id);
+                });
+                return bySymbol;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /** id -> rang de capitalisation (0 = la plus grosse) sur les pages demandées de /coins/markets. */
+    private CompletableFuture<Map<String, Integer>> fetchMarketRanks(int pages, int timeoutMs) {
+        CompletableFuture<Map<String, Integer>> chain = CompletableFuture.completedFuture(new HashMap<>());
+        for (int page = 1; page <= pages; page++) {
+            String url = BASE_URL + "/coins/markets?vs_currency=usd&order=market_cap_desc&per_page=250&page=" + page;
+            int offset = (page - 1) * 250;
+            chain = chain.thenCompose(ranks -> acquire().thenCompose(v -> http.get(url, timeoutMs)).thenApply(body -> {
+                try (InputStream in = body) {
+                    int[] i = {0};
+                    JsonPriceDecoder.records(in, new String[]{"id"}, coin -> {
+                        if (coin[0] != null) ranks.putIfAbsent(coin[0], offset + i[0]);
+                        i[0]++;
+                    });
+                    return ranks;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        // Sans classement, les doublons sont départagés par ordre alphabétique
+        return chain.exceptionally(ex -> new HashMap<>());
+    }
+
+    private static Map<String, String> resolve(Map<String, List<String>> bySymbol, Map<String, Integer> ranks) {
+        Map<String, String> resolved = new HashMap<>(bySymbol.size() * 2);
+        for (Map.Entry<String, List<String>> e : bySymbol.entrySet()) {
+            String best = null;
+            int bestRank = Integer.MAX_VALUE;
+            for (String id : e.getValue()) {
+                int rank = ranks.getOrDefault(id, Integer.MAX_VALUE);
+                if (best == null || rank < bestRank || (rank == bestRank && id.compareTo(best) < 0)) {
+                    best = id;
+                    bestRank = rank;
+                }
+            }
+            resolved.put(e.getKey(), best);
+        }
+        // Les correspondances historiques restent prioritaires (ex : "eth" -> ethereum)
+        resolved.putAll(DEFAULTS);
+        return resolved;
+    }
+
+    /**
+     * Jeton de la voie sampler du limiteur : le registre passe après les trades et commandes.
+     * Sans jeton au bout de ACQUIRE_TIMEOUT_MS, le chargement abandonne (cache disque ou correspondances par défaut).
+     */
+    private CompletableFuture<Void> acquire() {
+        return rateLimiter.acquire(RateLimiter.Priority.SAMPLER, ACQUIRE_TIMEOUT_MS, executor);
+    }
+
+    private void publish(Map<String, String> resolved) {
+        SymbolTrie next = trieOf(resolved);
+        ids = resolved;
+        trie = next;
+        loaded = true;
+    }
+
+    private static SymbolTrie trieOf(Map<String, String> resolved) {
+        SymbolTrie t = new SymbolTrie();
+        for (String sym : resolved.keySet()) t.add(sym);
+        return t;
+    }
+
+    private static Map<String, String> readCache(File file) {
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            if (!CACHE_HEADER.equals(in.readLine())) throw new IOException("format inconnu");
+            Map<String, String> resolved = new HashMap<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) resolved.put(line.substring(0, tab), line.substring(tab + 1));
+            }
+            resolved.putAll(DEFAULTS);
+            return resolved;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCache(File file, Map<String, String> resolved) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write(CACHE_HEADER);
+            out.newLine();
+            for (Map.Entry<String, String> e : resolved.entrySet()) {
+                out.write(e.getKey());
+                out.write('\t');
+                out.write(e.getValue());
+                out.newLine();
+            }
+        }
+    }
+
+    /** Id CoinGecko du symbole, ou null s'il est inconnu. */
+    public String resolve(String symbol) {
+        return ids.get(symbol.toLowerCase(Locale.ROOT));
+    }
+
+    /** Vrai si le symbole existe ; tant que la liste n'est pas chargée, tout symbole est accepté. */
+    public boolean isKnown(String symbol) {
+        return !loaded || trie.contains(symbol);
+    }
+
+    public boolean isLoaded() { return loaded; }
+
+    public int size() { return trie.size(); }
+
+    /** Symboles (majuscules) commençant par prefix, pour l'autocomplétion. */
+    public List<String> complete(String prefix, int limit) {
+        return trie.complete(prefix, limit);
+    }
+}
@@ -0,0 +1,177 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodage compressé d'une suite de points (date ms, prix) à la manière de Gorilla (Facebook, 2015) :
+ * <ul>
+ *     <li>dates : delta de delta, codé sur 1 bit quand l'intervalle est régulier, sinon 7/9/12/32/64 bits
+ *     précédés d'un préfixe ;</li>
+ *     <li>prix : XOR avec le prix précédent, 1 bit si inchangé, sinon seuls les bits significatifs
+ *     (en réutilisant la fenêtre précédente quand elle suffit).</li>
+ * </ul>
+ * Le bloc commence par le nombre de points (32 bits), puis le premier point en clair.
+ * Le décodage est séquentiel et n'alloue rien par point.
+ */
+public final class GorillaCodec {
+
+    private GorillaCodec() {}
+
+    /** Encode les n premiers points (dates croissantes) et renvoie le bloc compressé. */
+    public static byte[] encode(long[] ts, double[] values, int n) {
+        BitWriter out = new BitWriter(Math.max(16, n * 3));
+        out.write(n, 32);
+        if (n == 0) return out.toByteArray();
+        out.write(ts[0], 64);
+        long prevBits = Double.doubleToRawLongBits(values[0]);
+        out.write(prevBits, 64);
+        long prevTs = ts[0], prevDelta = 0;
+        int prevLeading = -1, prevTrailing = 0;
+        for (int i = 1; i < n; i++) {
+            long delta = ts[i] - prevTs;
+            long dod = delta - prevDelta;
+            if (dod == 0) {
+                out.write(0, 1);
+            } else if (dod >= -64 && dod <= 63) {
+                out.write(0b10, 2);
+                out.write(dod, 7);
+            } else if (dod >= -256 && dod <= 255) {
+                out.write(0b110, 3);
+                out.write(dod, 9);
+            } else if (dod >= -2048 && dod <= 2047) {
+                out.write(0b1110, 4);
+                out.write(dod, 12);
+            } else if (dod >= Integer.MIN_VALUE && dod <= Integer.MAX_VALUE) {
+                out.write(0b11110, 5);
+                out.write(dod, 32);
+            } else {
+                out.write(0b11111, 5);
+                out.write(dod, 64);
+            }
+            prevDelta = delta;
+            prevTs = ts[i];
+
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ prevBits;
+            prevBits = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                // Les bits significatifs tiennent dans la fenêtre précédente
+                out.write(0b10, 2);
+                out.write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 5);
+                out.write(meaningful & 63, 6); // 64 codé 0
+                out.write(xor >>> trailing, meaningful);
+                prevLeading = leading;
+                prevTrailing = trailing;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Lecture séquentielle d'un bloc : {@code while (d.next()) use(d.ts(), d.value());}.
+     * Lit le tampon en accès absolu : plusieurs décodeurs peuvent parcourir le même tampon en parallèle.
+     */
+    public static final class Decoder {
+        private final ByteBuffer buf;
+        private long bitPos;
+        private final int count;
+        private int index;
+        private long ts, delta, bits;
+        private int leading, trailing;
+
+        public Decoder(ByteBuffer block, int offset) {
+            this.buf = block;
+            this.bitPos = (long) offset * 8;
+            this.count = (int) read(32);
+        }
+
+        public int count() { return count; }
+
+        public boolean next() {
+            if (index >= count) return false;
+            if (index == 0) {
+                ts = read(64);
+                bits = read(64);
+            } else {
+                long dod;
+                if (read(1) == 0) dod = 0;
+                else if (read(1) == 0) dod = signed(read(7), 7);
+                else if (read(1) == 0) dod = signed(read(9), 9);
+                else if (read(1) == 0) dod = signed(read(12), 12);
+                else if (read(1) == 0) dod = signed(read(32), 32);
+                else dod = read(64);
+                delta += dod;
+                ts += delta;
+
+                if (read(1) == 1) {
+                    if (read(1) == 1) {
+                        leading = (int) read(5);
+                        int meaningful = (int) read(6);
+                        if (meaningful == 0) meaningful = 64;
+                        trailing = 64 - leading - meaningful;
+                    }
+                    bits ^= read(64 - leading - trailing) << trailing;
+                }
+            }
+            index++;
+            return true;
+        }
+
+        public long ts() { return ts; }
+
+        public double value() { return Double.longBitsToDouble(bits); }
+
+        private long read(int n) {
+            long v = 0;
+            while (n > 0) {
+                int byteIndex = (int) (bitPos >>> 3);
+                int bitOffset = (int) (bitPos & 7);
+                int take = Math.min(n, 8 - bitOffset);
+                int b = buf.get(byteIndex) & 0xFF;
+                int chunk = (b >>> (8 - bitOffset - take)) & ((1 << take) - 1);
+                v = (v << take) | chunk;
+                bitPos += take;
+                n -= take;
+            }
+            return v;
+        }
+
+        private static long signed(long v, int width) {
+            return (v << (64 - width)) >> (64 - width);
+        }
+    }
+
+    /** Écriture bit à bit, poids forts d'abord. */
+    private static final class BitWriter {
+        private byte[] data;
+        private long bitPos;
+
+        BitWriter(int initialBytes) { this.data = new byte[initialBytes]; }
+
+        void write(long value, int n) {
+            while (n > 0) {
+                int byteIndex = (int) (bitPos >>> 3);
+                if (byteIndex >= data.length) data = Arrays.copyOf(data, data.length * 2);
+                int bitOffset = (int) (bitPos & 7);
+                int take = Math.min(n, 8 - bitOffset);
+                int chunk = (int) ((value >>> (n - take)) & ((1 << take) - 1));
+                data[byteIndex] |= (byte) (chunk << (8 - bitOffset - take));
+                bitPos += take;
+                n -= take;
+            }
+        }
+
+        byte[] toByteArray() { return Arrays.copyOf(data, (int) ((bitPos + 7) >>> 3)); }
+    }
+}
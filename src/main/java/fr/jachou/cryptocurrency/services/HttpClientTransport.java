@@ -0,0 +1,68 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transport basé sur un unique java.net.http.HttpClient partagé :
+ * HTTP/2 si le serveur l'accepte, connexions réutilisées (keep-alive), réponses gzip.
+ */
+public class HttpClientTransport implements HttpTransport {
+
+    private final HttpClient client;
+
+    public HttpClientTransport(int connectTimeoutMs, Executor executor) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<InputStream> get(String url, int timeoutMs) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()).thenApply(response -> {
+            InputStream body = response.body();
+            if (response.statusCode() != 200) {
+                try {
+                    body.close();
+                } catch (IOException ignored) {}
+                // Hors du catch ci-dessous : l'appelant doit voir le statut, pas une UncheckedIOException
+                throw new CompletionException(new HttpStatusException(response.statusCode()));
+            }
+            try {
+                boolean gzip = response.headers().firstValue("Content-Encoding")
+                        .map(v -> v.equalsIgnoreCase("gzip")).orElse(false);
+                return gzip ? new GZIPInputStream(body) : body;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Ferme sans attendre : appelé sur le thread principal (rechargement, onDisable), où HttpClient.close()
+     * bloquerait jusqu'à la fin des requêtes en cours. Celles-ci échouent et passent par le repli habituel.
+     */
+    @Override
+    public void close() {
+        client.shutdownNow();
+    }
+}
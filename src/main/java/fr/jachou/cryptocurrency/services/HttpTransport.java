@@ -0,0 +1,41 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Couche de transport HTTP utilisée par les sources de prix.
+ * Le timeout, les retries et le circuit breaker restent gérés par PriceService.
+ */
+public interface HttpTransport {
+
+    /**
+     * GET asynchrone. Le future renvoie le corps (déjà décompressé) si le statut est 200,
+     * sinon il échoue avec une {@link HttpStatusException}. L'appelant ferme le flux.
+     */
+    CompletableFuture<InputStream> get(String url, int timeoutMs);
+
+    default void close() {}
+
+    /** type: "httpclient" (défaut) ou "urlconnection". */
+    static HttpTransport create(String type, int timeoutMs, Executor executor) {
+        if (type != null && type.toLowerCase(Locale.ROOT).equals("urlconnection")) {
+            return new UrlConnectionTransport(executor);
+        }
+        return new HttpClientTransport(timeoutMs, executor);
+    }
+
+    class HttpStatusException extends IOException {
+        private final int status;
+
+        public HttpStatusException(int status) {
+            super("API error: " + status);
+            this.status = status;
+        }
+
+        public int getStatus() { return status; }
+    }
+}
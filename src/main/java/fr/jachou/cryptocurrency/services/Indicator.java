@@ -0,0 +1,223 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.util.Locale;
+
+/**
+ * Indicateur technique calculé au fil des échantillons d'une série, en O(1) par échantillon :
+ * sma&lt;N&gt;, ema&lt;N&gt;, rsi&lt;N&gt; (lissage de Wilder) et bb&lt;N&gt; (bandes de Bollinger à 2 écarts-types).
+ * La dernière valeur se lit sans verrou ; un court historique des valeurs est gardé pour les graphiques.
+ * <p>
+ * Un seul écrivain (les ajouts passent par PriceTimeseriesService).
+ */
+public abstract class Indicator {
+
+    private static final int HISTORY = 24;
+
+    private final String name;
+    protected final int period;
+    private final double[] history = new double[HISTORY];
+    private int historyCount;
+    private volatile double value = Double.NaN;
+
+    protected Indicator(String name, int period) {
+        this.name = name;
+        this.period = period;
+    }
+
+    /** Crée l'indicateur décrit par spec (ex : "rsi14", "bb20"), null si la spec est inconnue. */
+    public static Indicator parse(String spec) {
+        String s = spec.trim().toLowerCase(Locale.ROOT);
+        int split = 0;
+        while (split < s.length() && !Character.isDigit(s.charAt(split))) split++;
+        if (split == 0 || split == s.length()) return null;
+        int period;
+        try {
+            period = Integer.parseInt(s.substring(split));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (period < 2 || period > 1000) return null;
+        return switch (s.substring(0, split)) {
+            case "sma" -> new Sma(s, period);
+            case "ema" -> new Ema(s, period);
+            case "rsi" -> new Rsi(s, period);
+            case "bb" -> new Bollinger(s, period);
+            default -> null;
+        };
+    }
+
+    public String name() { return name; }
+
+    /** Dernière valeur, NaN tant que la période n'est pas remplie. */
+    public double value() { return value; }
+
+    /** Composante nommée (ex : "upper"/"lower" pour Bollinger) ; "" ou inconnue -> valeur principale ou NaN. */
+    public double value(String component) {
+        return component == null || component.isEmpty() ? value : Double.NaN;
+    }
+
+    /** Vrai pour un oscillateur borné (RSI) plutôt qu'une valeur en dollars. */
+    public boolean isOscillator() { return false; }
+
+    public synchronized void add(double price) {
+        double v = update(price);
+        value = v;
+        if (Double.isNaN(v)) return;
+        history[historyCount % HISTORY] = v;
+        historyCount++;
+    }
+
+    /** Copie les dernières valeurs (de la plus ancienne à la plus récente) dans out ; renvoie leur nombre. */
+    public synchronized int history(double[] out) {
+        int n = Math.min(Math.min(historyCount, HISTORY), out.length);
+        for (int i = 0; i < n; i++) out[i] = history[(historyCount - n + i) % HISTORY];
+        return n;
+    }
+
+    /** Intègre un prix et renvoie la nouvelle valeur (NaN si pas encore disponible). */
+    protected abstract double update(double price);
+
+    /** Fenêtre glissante de prix avec somme et somme des carrés courantes (recalculées à chaque tour). */
+    private static final class Window {
+        final double[] values;
+        int count;
+        double shift, sum, sumSq;
+
+        Window(int period) { values = new double[period]; }
+
+        void add(double price) {
+            int slot = count % values.length;
+            if (count == 0) shift = price;
+            if (count >= values.length) {
+                double old = values[slot] - shift;
+                sum -= old;
+                sumSq -= old * old;
+            }
+            values[slot] = price;
+            double d = price - shift;
+            sum += d;
+            sumSq += d * d;
+            count++;
+            // Une fois par tour : recalcul exact pour borner la dérive des soustractions
+            if (slot == values.length - 1) {
+                shift = values[0];
+                sum = 0;
+                sumSq = 0;
+                for (double v : values) {
+                    double e = v - shift;
+                    sum += e;
+                    sumSq += e * e;
+                }
+            }
+        }
+
+        boolean full() { return count >= values.length; }
+
+        double mean() { return shift + sum / values.length; }
+
+        double stddev() {
+            double m = sum / values.length;
+            return Math.sqrt(Math.max(0.0, sumSq / values.length - m * m));
+        }
+    }
+
+    private static final class Sma extends Indicator {
+        private final Window window;
+
+        Sma(String name, int period) {
+            super(name, period);
+            window = new Window(period);
+        }
+
+        @Override
+        protected double update(double price) {
+            window.add(price);
+            return window.full() ? window.mean() : Double.NaN;
+        }
+    }
+
+    /** Moyenne exponentielle (alpha = 2 / (N + 1)), amorcée par la moyenne simple des N premiers prix. */
+    private static final class Ema extends Indicator {
+        private final double alpha;
+        private double ema, seedSum;
+        private int count;
+
+        Ema(String name, int period) {
+            super(name, period);
+            alpha = 2.0 / (period + 1);
+        }
+
+        @Override
+        protected double update(double price) {
+            count++;
+            if (count < period) {
+                seedSum += price;
+                return Double.NaN;
+            }
+            ema = count == period ? (seedSum + price) / period : ema + alpha * (price - ema);
+            return ema;
+        }
+    }
+
+    /** RSI de Wilder : moyennes des hausses et baisses amorcées sur N variations puis lissées en 1/N. */
+    private static final class Rsi extends Indicator {
+        private double prev = Double.NaN, avgGain, avgLoss;
+        private int changes;
+
+        Rsi(String name, int period) { super(name, period); }
+
+        @Override
+        public boolean isOscillator() { return true; }
+
+        @Override
+        protected double update(double price) {
+            if (Double.isNaN(prev)) {
+                prev = price;
+                return Double.NaN;
+            }
+            double change = price - prev;
+            prev = price;
+            double gain = Math.max(0.0, change), loss = Math.max(0.0, -change);
+            changes++;
+            if (changes <= period) {
+                avgGain += gain / period;
+                avgLoss += loss / period;
+                if (changes < period) return Double.NaN;
+            } else {
+                avgGain = (avgGain * (period - 1) + gain) / period;
+                avgLoss = (avgLoss * (period - 1) + loss) / period;
+            }
+            if (avgLoss == 0.0) return avgGain == 0.0 ? 50.0 : 100.0;
+            return 100.0 - 100.0 / (1.0 + avgGain / avgLoss);
+        }
+    }
+
+    /** Bandes de Bollinger : moyenne simple (valeur principale) et bandes à ±2 écarts-types. */
+    private static final class Bollinger extends Indicator {
+        private static final double K = 2.0;
+        private final Window window;
+        private volatile double upper = Double.NaN, lower = Double.NaN;
+
+        Bollinger(String name, int period) {
+            super(name, period);
+            window = new Window(period);
+        }
+
+        @Override
+        public double value(String component) {
+            if ("upper".equals(component)) return upper;
+            if ("lower".equals(component)) return lower;
+            return super.value(component);
+        }
+
+        @Override
+        protected double update(double price) {
+            window.add(price);
+            if (!window.full()) return Double.NaN;
+            double mid = window.mean(), band = K * window.stddev();
+            upper = mid + band;
+            lower = mid - band;
+            return mid;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor dédié aux I/O réseau du plugin, pour ne pas occuper le ForkJoinPool commun.
+ * Soit un thread virtuel par tâche (défaut), soit un pool de threads plateforme borné.
+ * Expose la profondeur de file et le nombre de tâches actives.
+ */
+public class IoExecutor implements Executor {
+
+    public enum Type { VIRTUAL, PLATFORM }
+
+    private final Type type;
+    private final ExecutorService delegate;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private IoExecutor(Type type, ExecutorService delegate) {
+        this.type = type;
+        this.delegate = delegate;
+    }
+
+    public static IoExecutor virtual() {
+        return new IoExecutor(Type.VIRTUAL,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Crypto-IO-", 0).factory()));
+    }
+
+    public static IoExecutor platform(int threads, int queueSize) {
+        AtomicInteger n = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                Math.max(1, threads), Math.max(1, threads), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                r -> {
+                    Thread t = new Thread(r, "Crypto-IO-" + n.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return new IoExecutor(Type.PLATFORM, pool);
+    }
+
+    /** type: "virtual" ou "platform" (insensible à la casse), virtual par défaut. */
+    public static IoExecutor create(String type, int threads, int queueSize) {
+        if (type != null && type.toLowerCase(Locale.ROOT).equals("platform")) return platform(threads, queueSize);
+        return virtual();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        queued.incrementAndGet();
+        try {
+            delegate.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public Type getType() { return type; }
+
+    /** Tâches soumises mais pas encore démarrées. */
+    public int getQueueDepth() { return queued.get(); }
+
+    public int getActiveTasks() { return active.get(); }
+
+    public long getRejectedTasks() { return rejected.get(); }
+
+    public void shutdown() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(2, TimeUnit.SECONDS)) delegate.shutdownNow();
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
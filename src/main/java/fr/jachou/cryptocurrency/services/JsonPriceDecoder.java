@@ -0,0 +1,376 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Décodeur JSON en flux pour les réponses de prix CoinGecko : lit directement les octets de la réponse,
+ * sans la convertir en String ni construire d'arbre JSON. Seules les valeurs utiles sont décodées,
+ * le reste est sauté octet par octet.
+ * <ul>
+ *     <li>/simple/price : {@code {"bitcoin":{"usd":65000.1},...}} -> id -> prix ;</li>
+ *     <li>/coins/{id}/market_chart : {@code {"prices":[[ts,prix],...],...}} -> points passés à un {@link PointSink} ;</li>
+ *     <li>/coins/list, /coins/markets : {@code [{"id":"bitcoin","symbol":"btc",...},...]} -> champs texte
+ *     demandés de chaque objet, passés à un {@link RecordSink}.</li>
+ * </ul>
+ */
+public final class JsonPriceDecoder {
+
+    /** Reçoit les points d'une série market_chart (date ms, valeur), sans boxing. */
+    @FunctionalInterface
+    public interface PointSink {
+        void accept(long ts, double value);
+    }
+
+    /** Reçoit les champs demandés d'un objet, dans l'ordre de la demande (null si absent) ; tableau réutilisé. */
+    @FunctionalInterface
+    public interface RecordSink {
+        void accept(String[] values);
+    }
+
+    private JsonPriceDecoder() {}
+
+    /** Prix par id CoinGecko pour la devise demandée (ex : "usd") ; les ids sans ce champ sont absents. */
+    public static Map<String, Double> simplePrice(InputStream in, String currency) throws IOException {
+        Reader r = new Reader(in);
+        byte[] field = currency.getBytes(StandardCharsets.US_ASCII);
+        Map<String, Double> prices = new HashMap<>();
+        r.expect('{');
+        if (r.skipWsPeek() == '}') return prices;
+        do {
+            String id = r.readString();
+            r.expect(':');
+            if (r.skipWsPeek() != '{') {
+                r.skipValue();
+                continue;
+            }
+            r.expect('{');
+            if (r.skipWsPeek() != '}') {
+                do {
+                    boolean wanted = r.readKeyEquals(field);
+                    r.expect(':');
+                    if (wanted && isNumberStart(r.skipWsPeek())) prices.put(id, r.readDouble());
+                    else r.skipValue();
+                } while (r.nextMember('}'));
+            } else {
+                r.expect('}');
+            }
+        } while (r.nextMember('}'));
+        return prices;
+    }
+
+    /**
+     * Parcourt la série nommée (ex : "prices") d'une réponse market_chart et transmet chaque point.
+     * @return le nombre de points lus
+     */
+    public static int marketChart(InputStream in, String series, PointSink sink) throws IOException {
+        Reader r = new Reader(in);
+        byte[] field = series.getBytes(StandardCharsets.US_ASCII);
+        int count = 0;
+        r.expect('{');
+        if (r.skipWsPeek() == '}') return 0;
+        do {
+            boolean wanted = r.readKeyEquals(field);
+            r.expect(':');
+            if (!wanted || r.skipWsPeek() != '[') {
+                r.skipValue();
+                continue;
+            }
+            r.expect('[');
+            if (r.skipWsPeek() == ']') {
+                r.expect(']');
+                continue;
+            }
+            do {
+                r.expect('[');
+                long ts = (long) r.readDouble();
+                r.expect(',');
+                double value = r.skipWsPeek() == 'n' ? Double.NaN : r.readDouble();
+                if (Double.isNaN(value)) r.skipValue();
+                // Éléments supplémentaires éventuels ignorés
+                while (r.nextMember(']')) r.skipValue();
+                if (!Double.isNaN(value)) {
+                    sink.accept(ts, value);
+                    count++;
+                }
+            } while (r.nextMember(']'));
+        } while (r.nextMember('}'));
+        return count;
+    }
+
+    /**
+     * Parcourt un tableau d'objets et transmet, pour chacun, les valeurs texte des champs demandés ;
+     * une valeur non textuelle compte comme absente, les autres champs et éléments sont sautés.
+     * @return le nombre d'objets lus
+     */
+    public static int records(InputStream in, String[] fields, RecordSink sink) throws IOException {
+        Reader r = new Reader(in);
+        byte[][] keys = new byte[fields.length][];
+        for (int k = 0; k < fields.length; k++) keys[k] = fields[k].getBytes(StandardCharsets.US_ASCII);
+        String[] values = new String[fields.length];
+        int count = 0;
+        r.expect('[');
+        if (r.skipWsPeek() == ']') {
+            r.expect(']');
+            return 0;
+        }
+        do {
+            if (r.skipWsPeek() != '{') {
+                r.skipValue();
+                continue;
+            }
+            Arrays.fill(values, null);
+            r.expect('{');
+            if (r.skipWsPeek() != '}') {
+                do {
+                    int field = r.readKeyIndex(keys);
+                    r.expect(':');
+                    if (field >= 0 && r.skipWsPeek() == '"') values[field] = r.readString();
+                    else r.skipValue();
+                } while (r.nextMember('}'));
+            } else {
+                r.expect('}');
+            }
+            sink.accept(values);
+            count++;
+        } while (r.nextMember(']'));
+        return count;
+    }
+
+    private static boolean isNumberStart(int c) {
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    /** Lecteur d'octets minimal avec un tampon réutilisé pour les chaînes et les nombres. */
+    private static final class Reader {
+        // Puissances de 10 exactement représentables en double (chemin rapide de conversion)
+        private static final double[] POW10 = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+        private final InputStream in;
+        private final byte[] buf = new byte[8192];
+        private int pos, limit;
+        private byte[] scratch = new byte[64];
+
+        Reader(InputStream in) { this.in = in; }
+
+        private int peek() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buf[pos] & 0xFF;
+        }
+
+        private int next() throws IOException {
+            int c = peek();
+            if (c < 0) throw new EOFException("fin de réponse inattendue");
+            pos++;
+            return c;
+        }
+
+        int skipWsPeek() throws IOException {
+            int c;
+            while ((c = peek()) == ' ' || c == '\n' || c == '\r' || c == '\t') pos++;
+            return c;
+        }
+
+        void expect(char expected) throws IOException {
+            skipWsPeek();
+            int c = next();
+            if (c != expected) throw new IOException("JSON invalide : '" + expected + "' attendu, '" + (char) c + "' trouvé");
+        }
+
+        /** Après un membre : vrai si une virgule suit, faux si le délimiteur fermant a été consommé. */
+        boolean nextMember(char close) throws IOException {
+            skipWsPeek();
+            int c = next();
+            if (c == ',') return true;
+            if (c == close) return false;
+            throw new IOException("JSON invalide : ',' ou '" + close + "' attendu");
+        }
+
+        /** Lit une chaîne dans le tampon de travail, renvoie sa longueur en octets (UTF-8). */
+        private int readStringBytes() throws IOException {
+            expect('"');
+            int len = 0;
+            while (true) {
+                int c = next();
+                if (c == '"') return len;
+                if (c == '\\') {
+                    int e = next();
+                    switch (e) {
+                        case 'n' -> c = '\n';
+                        case 't' -> c = '\t';
+                        case 'r' -> c = '\r';
+                        case 'b' -> c = '\b';
+                        case 'f' -> c = '\f';
+                        case 'u' -> {
+                            int cp = readHex4();
+                            // Paire de substitution (\\uD83D\\uDE00) : les deux moitiés forment un seul point de code
+                            if (Character.isHighSurrogate((char) cp) && peek() == '\\') {
+                                pos++;
+                                if (next() != 'u') throw new IOException("JSON invalide : échappement \\u attendu après une substitution");
+                                int low = readHex4();
+                                if (Character.isLowSurrogate((char) low)) {
+                                    cp = Character.toCodePoint((char) cp, (char) low);
+                                } else {
+                                    len = putUtf8(len, cp);
+                                    cp = low;
+                                }
+                            }
+                            len = putUtf8(len, cp);
+                            continue;
+                        }
+                        default -> c = e; // \" \\ \/
+                    }
+                }
+                len = put(len, (byte) c);
+            }
+        }
+
+        private int readHex4() throws IOException {
+            int cp = 0;
+            for (int i = 0; i < 4; i++) {
+                int d = Character.digit(next(), 16);
+                if (d < 0) throw new IOException("JSON invalide : échappement \\u incomplet");
+                cp = (cp << 4) | d;
+            }
+            return cp;
+        }
+
+        /** Encode un point de code en UTF-8 dans le tampon de travail (substitution isolée -> '?'). */
+        private int putUtf8(int len, int cp) {
+            if (cp < 0x80) return put(len, (byte) cp);
+            if (cp < 0x800) {
+                len = put(len, (byte) (0xC0 | cp >>> 6));
+            } else if (cp < 0x10000) {
+                if (Character.isSurrogate((char) cp)) return put(len, (byte) '?');
+                len = put(len, (byte) (0xE0 | cp >>> 12));
+                len = put(len, (byte) (0x80 | (cp >>> 6) & 0x3F));
+            } else {
+                len = put(len, (byte) (0xF0 | cp >>> 18));
+                len = put(len, (byte) (0x80 | (cp >>> 12) & 0x3F));
+                len = put(len, (byte) (0x80 | (cp >>> 6) & 0x3F));
+            }
+            return put(len, (byte) (0x80 | cp & 0x3F));
+        }
+
+        private int put(int len, byte b) {
+            if (len == scratch.length) scratch = Arrays.copyOf(scratch, len * 2);
+            scratch[len] = b;
+            return len + 1;
+        }
+
+        String readString() throws IOException {
+            int len = readStringBytes();
+            return new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+
+        /** Lit une clé et la compare à expected sans allouer. */
+        boolean readKeyEquals(byte[] expected) throws IOException {
+            int len = readStringBytes();
+            return Arrays.equals(scratch, 0, len, expected, 0, expected.length);
+        }
+
+        /** Lit une clé et renvoie l'indice de la clé attendue égale, -1 si aucune (sans allouer). */
+        int readKeyIndex(byte[][] expected) throws IOException {
+            int len = readStringBytes();
+            for (int k = 0; k < expected.length; k++) {
+                if (Arrays.equals(scratch, 0, len, expected[k], 0, expected[k].length)) return k;
+            }
+            return -1;
+        }
+
+        /**
+         * Lit un nombre. Chemin rapide exact quand la mantisse tient sur 53 bits et l'exposant décimal
+         * dans les puissances exactes de 10 ; sinon Double.parseDouble sur les octets lus.
+         */
+        double readDouble() throws IOException {
+            skipWsPeek();
+            int len = 0;
+            int c;
+            while ((c = peek()) >= 0 && (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9'))) {
+                len = put(len, (byte) c);
+                pos++;
+            }
+            if (len == 0) throw new IOException("JSON invalide : nombre attendu");
+            boolean negative = scratch[0] == '-';
+            long mantissa = 0;
+            int digits = 0, scale = 0;
+            boolean dot = false, simple = true, zero = false;
+            for (int i = negative ? 1 : 0; i < len; i++) {
+                byte b = scratch[i];
+                if (b == '.') {
+                    if (dot) { simple = false; break; }
+                    dot = true;
+                } else if (b >= '0' && b <= '9') {
+                    if (digits == 0 && b == '0') {
+                        zero = true;
+                        if (dot) scale++;
+                        continue;
+                    }
+                    if (++digits > 15) { simple = false; break; }
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (dot) scale++;
+                } else {
+                    simple = false; // exposant : chemin lent
+                    break;
+                }
+            }
+            if (simple && digits == 0 && !zero) throw new IOException("JSON invalide : nombre sans chiffre");
+            if (simple && scale < POW10.length) {
+                double v = scale == 0 ? mantissa : mantissa / POW10[scale];
+                return negative ? -v : v;
+            }
+            try {
+                return Double.parseDouble(new String(scratch, 0, len, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new IOException("JSON invalide : nombre '" + new String(scratch, 0, len, StandardCharsets.US_ASCII) + "'");
+            }
+        }
+
+        /** Saute une valeur quelconque (objet, tableau, chaîne, nombre, littéral). */
+        void skipValue() throws IOException {
+            int c = skipWsPeek();
+            if (c == '"') {
+                pos++;
+                while (true) {
+                    int s = next();
+                    if (s == '\\') next();
+                    else if (s == '"') return;
+                }
+            }
+            if (c == '{' || c == '[') {
+                int depth = 0;
+                boolean inString = false;
+                do {
+                    int s = next();
+                    if (inString) {
+                        if (s == '\\') next();
+                        else if (s == '"') inString = false;
+                    } else if (s == '"') {
+                        inString = true;
+                    } else if (s == '{' || s == '[') {
+                        depth++;
+                    } else if (s == '}' || s == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+                return;
+            }
+            // Nombre ou littéral (true/false/null)
+            while ((c = peek()) >= 0 && c != ',' && c != '}' && c != ']' && c != ' ' && c != '\n' && c != '\r' && c != '\t') pos++;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.util.Arrays;
+
+/**
+ * Latences (ms) des derniers appels réussis à la source, pour estimer un quantile (ex : p95).
+ * Fenêtre circulaire de taille fixe ; le quantile est recalculé au plus tous les {@link #RECOMPUTE_EVERY} appels.
+ */
+public class LatencyTracker {
+
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final long[] samples;
+    private int next;
+    private int count;
+    private int sinceRecompute = RECOMPUTE_EVERY;
+    private double cachedQuantile = Double.NaN;
+    private long cachedValue;
+
+    public LatencyTracker(int window) {
+        this.samples = new long[Math.max(8, window)];
+    }
+
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+        sinceRecompute++;
+    }
+
+    public synchronized int count() { return count; }
+
+    /** Quantile q (0-1) des latences de la fenêtre, 0 si aucune mesure. */
+    public synchronized long quantile(double q) {
+        if (count == 0) return 0L;
+        if (sinceRecompute >= RECOMPUTE_EVERY || q != cachedQuantile) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int idx = (int) Math.min(count - 1, Math.max(0, Math.ceil(q * count) - 1));
+            cachedValue = sorted[idx];
+            cachedQuantile = q;
+            sinceRecompute = 0;
+        }
+        return cachedValue;
+    }
+}
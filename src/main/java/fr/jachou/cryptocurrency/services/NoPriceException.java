@@ -0,0 +1,19 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.util.Locale;
+
+/**
+ * Aucun prix connu pour ce symbole (ticker inconnu, absent de la réponse ou source indisponible sans cache).
+ * Remplace l'ancienne valeur de repli 1.0, qui pouvait être prise pour un vrai prix.
+ */
+public class NoPriceException extends RuntimeException {
+
+    private final String symbol;
+
+    public NoPriceException(String symbol) {
+        super("Aucun prix disponible pour " + symbol.toUpperCase(Locale.ROOT));
+        this.symbol = symbol;
+    }
+
+    public String getSymbol() { return symbol; }
+}
@@ -0,0 +1,112 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Diffusion des changements de prix aux abonnés.
+ * <ul>
+ *     <li>ASYNC : chaque tick est livré sur l'executor I/O, dans l'ordre de publication par symbole non garanti ;</li>
+ *     <li>MAIN_COALESCED : les ticks sont regroupés par symbole (premier ancien prix, dernier nouveau prix)
+ *     et livrés sur le thread principal au plus une fois par fenêtre de coalescence.</li>
+ * </ul>
+ * Un abonné qui lève une exception n'empêche pas la livraison aux autres.
+ */
+public class PriceEventBus {
+
+    public enum DeliveryMode { ASYNC, MAIN_COALESCED }
+
+    /** Abonnement, à annuler quand l'abonné n'a plus besoin des ticks. */
+    public final class Subscription {
+        private final Consumer<PriceTick> listener;
+        private final DeliveryMode mode;
+        private final Map<Integer, PriceTick> pending = new ConcurrentHashMap<>();
+
+        private Subscription(Consumer<PriceTick> listener, DeliveryMode mode) {
+            this.listener = listener;
+            this.mode = mode;
+        }
+
+        public void cancel() {
+            subscribers.remove(this);
+            pending.clear();
+        }
+    }
+
+    private final Executor asyncExecutor;
+    private final List<Subscription> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile Plugin plugin;
+    private volatile long coalesceTicks = 10L;
+
+    public PriceEventBus(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /** Plugin utilisé pour planifier les livraisons sur le thread principal (requis pour MAIN_COALESCED). */
+    public void bind(Plugin plugin, long coalesceTicks) {
+        this.plugin = plugin;
+        this.coalesceTicks = Math.max(1L, coalesceTicks);
+    }
+
+    public Subscription subscribe(Consumer<PriceTick> listener, DeliveryMode mode) {
+        Subscription sub = new Subscription(listener, mode);
+        subscribers.add(sub);
+        return sub;
+    }
+
+    public boolean hasSubscribers() { return !subscribers.isEmpty(); }
+
+    public void publish(PriceTick tick) {
+        boolean main = false;
+        for (Subscription sub : subscribers) {
+            if (sub.mode == DeliveryMode.ASYNC) {
+                try {
+                    asyncExecutor.execute(() -> deliver(sub, tick));
+                } catch (RuntimeException e) {
+                    // Executor saturé ou arrêté : le tick est perdu pour cet abonné
+                }
+            } else {
+                sub.pending.merge(tick.symbolId(), tick, (prev, next) ->
+                        new PriceTick(next.symbolId(), next.symbol(), prev.oldPrice(), next.newPrice(), next.ts()));
+                main = true;
+            }
+        }
+        Plugin p = plugin;
+        if (main && p != null && p.isEnabled() && drainScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTaskLater(p, this::drainMain, coalesceTicks);
+        }
+    }
+
+    private void drainMain() {
+        drainScheduled.set(false);
+        for (Subscription sub : subscribers) {
+            if (sub.mode != DeliveryMode.MAIN_COALESCED) continue;
+            for (Integer id : sub.pending.keySet()) {
+                // remove() atomique : un tick fusionné entre-temps n'est pas perdu
+                PriceTick tick = sub.pending.remove(id);
+                if (tick != null) deliver(sub, tick);
+            }
+        }
+    }
+
+    private void deliver(Subscription sub, PriceTick tick) {
+        try {
+            sub.listener.accept(tick);
+        } catch (RuntimeException e) {
+            Bukkit.getLogger().warning("[Crypto] Erreur dans un abonné aux prix : " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        subscribers.clear();
+    }
+}
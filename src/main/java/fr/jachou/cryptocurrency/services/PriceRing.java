@@ -0,0 +1,90 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Série de prix d'un symbole dans un tampon circulaire de taille fixe (tableaux long[]/double[] parallèles).
+ * <p>
+ * Un seul écrivain à la fois (écritures sérialisées) ; les lecteurs ne prennent aucun verrou :
+ * ils copient les points puis vérifient un compteur de séquence (seqlock) et recommencent
+ * si une écriture a eu lieu pendant la copie.
+ */
+public class PriceRing {
+
+    private static final VarHandle SEQ;
+
+    static {
+        try {
+            SEQ = MethodHandles.lookup().findVarHandle(PriceRing.class, "seq", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long[] ts;
+    private final double[] prices;
+    private final int capacity;
+    // Impair pendant une écriture
+    private volatile long seq;
+    // Nombre total de points écrits depuis la création
+    private volatile long written;
+
+    public PriceRing(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.ts = new long[this.capacity];
+        this.prices = new double[this.capacity];
+    }
+
+    public int capacity() { return capacity; }
+
+    /** Ajoute un point en O(1), en écrasant le plus ancien si le tampon est plein. */
+    public synchronized void add(long timestamp, double price) {
+        long s = seq;
+        SEQ.setVolatile(this, s + 1);
+        VarHandle.storeStoreFence();
+        int slot = (int) (written % capacity);
+        ts[slot] = timestamp;
+        prices[slot] = price;
+        written = written + 1;
+        SEQ.setRelease(this, s + 2);
+    }
+
+    public int size() {
+        return (int) Math.min(written, capacity);
+    }
+
+    /**
+     * Copie les n derniers points (du plus ancien au plus récent) au début de tsOut/pricesOut.
+     * @return le nombre de points copiés (au plus n, la taille de la série et celle des tableaux)
+     */
+    public int copyLast(int n, long[] tsOut, double[] pricesOut) {
+        while (true) {
+            long s1 = (long) SEQ.getAcquire(this);
+            if ((s1 & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long total = written;
+            int count = (int) Math.min(Math.min(n, Math.min(total, capacity)), Math.min(tsOut.length, pricesOut.length));
+            long first = total - count;
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((first + i) % capacity);
+                tsOut[i] = ts[slot];
+                pricesOut[i] = prices[slot];
+            }
+            VarHandle.loadLoadFence();
+            if ((long) SEQ.getVolatile(this) == s1) return count;
+        }
+    }
+
+    /** Nouveau tampon de capacité donnée contenant les points les plus récents de celui-ci. */
+    public PriceRing resized(int newCapacity) {
+        PriceRing copy = new PriceRing(newCapacity);
+        long[] t = new long[copy.capacity];
+        double[] p = new double[copy.capacity];
+        int n = copyLast(copy.capacity, t, p);
+        for (int i = 0; i < n; i++) copy.add(t[i], p[i]);
+        return copy;
+    }
+}
@@ -1,159 +1,835 @@
 package fr.jachou.cryptocurrency.services;
 
 import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import fr.jachou.cryptocurrency.Cryptocurrency;
-import org.json.JSONObject;
+import fr.jachou.cryptocurrency.services.RateLimiter.Priority;
 
 public class PriceService {
 
     public enum ApiStatus { OK, DEGRADED, DOWN }
 
-    // Cache symbol -> prix (USD)
-    private final Map<String, Double> cache = new ConcurrentHashMap<>();
+    // Cache symbole -> prix (USD), date de mise à jour et dernier accès, indexés par id entier
+    private final SymbolTable symbolTable = new SymbolTable();
 
     // Temps de cache en ms (ex : 60 secondes)
-    private static final long CACHE_DURATION = 60_000;
-    private final Map<String, Long> lastUpdate = new ConcurrentHashMap<>();
+    private long cacheDurationMs = 60_000;
 
-    // Circuit breaker minimal
-    private int errorThreshold = 5;
-    private int openSeconds = 30;
-    private volatile long circuitOpenUntil = 0L;
-    private volatile int recentErrors = 0;
+    // Cache négatif : symbole (minuscules) -> date (ms) jusqu'à laquelle on ne le redemande pas
+    private final Map<String, Long> negativeUntil = new ConcurrentHashMap<>();
+    private static final int MAX_NEGATIVE_ENTRIES = 10_000;
+    private long negativeTtlMs = 600_000;
+    private final AtomicLong rejectedLookups = new AtomicLong();
+
+    // Requêtes en cours par symbole (single-flight) + compteurs
+    private final Map<String, CompletableFuture<Double>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCalls = new AtomicLong();
+    private final AtomicLong networkCalls = new AtomicLong();
+
+    // Limiteur de débit avec voies de priorité (trade > commande > sampler > placeholder/GUI)
+    private final RateLimiter rateLimiter = new RateLimiter();
+
+    // Circuit breaker (fenêtre glissante, sans verrou, avec état half-open)
+    private final CircuitBreaker breaker = new CircuitBreaker();
+
+    // Stale-while-revalidate / refresh-ahead
+    private boolean refreshAhead = true;
+    private long refreshAheadMs = 10_000;
+    private long maxStaleMs = 300_000;
+
+    // TTL adaptatif : chaque symbole garde son prix le temps que le mouvement attendu atteigne targetMove
+    private boolean adaptiveTtl = false;
+    private long minTtlMs = 15_000;
+    private long maxTtlMs = 300_000;
+    private double targetMove = 0.0025;
+    // Fenêtre d'accès au-delà de laquelle un symbole n'est plus "chaud"
+    private static final long HOT_WINDOW_MS = 120_000;
+    private BukkitTask refreshAheadTask;
+
+    // Instantané du cache sur disque (démarrage à chaud)
+    private volatile File snapshotFile;
+    private BukkitTask snapshotTask;
+
+    // Executor dédié aux appels HTTP (hors ForkJoinPool commun)
+    private volatile IoExecutor ioExecutor = IoExecutor.virtual();
+    private final Executor asyncExecutor = task -> ioExecutor.execute(task);
 
     // HTTP config
     private int timeoutMs = 4000;
     private int retryCount = 1;
+    // Backoff exponentiel avec jitter entre deux tentatives
+    private long backoffBaseMs = 200;
+    private long backoffMaxMs = 2000;
+    private String transportType = "httpclient";
+    private volatile HttpTransport transport = HttpTransport.create(transportType, timeoutMs, ioExecutor);
+    // Vue stable sur le transport courant, transmise aux sources (suit les reconfigurations)
+    private final HttpTransport http = (url, timeout) -> transport.get(url, timeout);
+
+    // Registre des coins CoinGecko (ticker -> id, autocomplétion)
+    private final CoinRegistry coins = new CoinRegistry(http, rateLimiter, asyncExecutor);
+
+    // Source des prix (CoinGecko par défaut)
+    private volatile PriceSource source = new CoinGeckoPriceSource(http, timeoutMs, coins);
+
+    // Flux WebSocket optionnel (les prix REST prennent le relais quand il est coupé)
+    private volatile PriceStream stream;
+
+    // Requêtes couvertes (hedging) : seconde requête si la première dépasse le quantile de latence
+    private final LatencyTracker latency = new LatencyTracker(256);
+    private boolean hedging = false;
+    private boolean hedgeTradeOnly = true;
+    private double hedgeQuantile = 0.95;
+    private long hedgeMinDelayMs = 150;
+    private volatile PriceSource hedgeSource;
+    private final AtomicLong hedgedCalls = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    // Notifications de changement de prix (livraison async sur l'executor I/O courant)
+    private final PriceEventBus events = new PriceEventBus(asyncExecutor);
+
+    public void configureRateLimit(boolean enabled, int requestsPerMinute, int burst) {
+        rateLimiter.configure(enabled, requestsPerMinute, burst);
+    }
+
+    public RateLimiter getRateLimiter() { return rateLimiter; }
 
     public void configureCircuitBreaker(int errorThreshold, int openSeconds) {
-        this.errorThreshold = Math.max(1, errorThreshold);
-        this.openSeconds = Math.max(1, openSeconds);
+        configureCircuitBreaker(errorThreshold, openSeconds, 60, 0.5);
+    }
+
+    /**
+     * errorThreshold : nombre minimal d'échecs dans la fenêtre pour ouvrir le circuit ;
+     * errorRate : part minimale d'échecs parmi les appels de la fenêtre (0-1).
+     */
+    public void configureCircuitBreaker(int errorThreshold, int openSeconds, int windowSeconds, double errorRate) {
+        breaker.configure(errorThreshold, errorRate, openSeconds, windowSeconds);
     }
 
     public void configureHttp(int timeoutMs, int retryCount) {
         this.timeoutMs = Math.max(1000, timeoutMs);
         this.retryCount = Math.max(0, retryCount);
+        rebuildTransport();
     }
 
-    public ApiStatus getApiStatus() {
+    /**
+     * Délai avant la tentative n (à partir de 0) : aléatoire dans [0, min(maxMs, baseMs * 2^n)]
+     * ("full jitter"), pour ne pas renvoyer toutes les requêtes en échec au même instant.
+     */
+    public void configureBackoff(int baseMs, int maxMs) {
+        this.backoffBaseMs = Math.max(0, baseMs);
+        this.backoffMaxMs = Math.max(backoffBaseMs, maxMs);
+    }
+
+    /**
+     * Hedging : si la requête n'a pas répondu après le quantile de latence observé (borné par minDelayMs),
+     * une seconde requête part (même source, ou hedgeSource si définie) et la première réponse gagne.
+     * La seconde requête consomme un jeton du limiteur et n'est envoyée que circuit fermé.
+     */
+    public void configureHedging(boolean enabled, boolean tradeOnly, double quantile, int minDelayMs) {
+        this.hedging = enabled;
+        this.hedgeTradeOnly = tradeOnly;
+        this.hedgeQuantile = Math.min(0.999, Math.max(0.5, quantile));
+        this.hedgeMinDelayMs = Math.max(10, minDelayMs);
+    }
+
+    /** Source secondaire pour les requêtes couvertes (null : la source principale). */
+    public void setHedgeSource(PriceSource hedgeSource) {
+        PriceSource previous = this.hedgeSource;
+        this.hedgeSource = hedgeSource;
+        if (previous != null) previous.close();
+    }
+
+    public LatencyTracker getLatency() { return latency; }
+
+    public long getHedgedCalls() { return hedgedCalls.get(); }
+
+    public long getHedgeWins() { return hedgeWins.get(); }
+
+    public double getHedgeQuantile() { return hedgeQuantile; }
+
+    /** type: "httpclient" (HttpClient partagé, HTTP/2, gzip) ou "urlconnection" (ancien transport). */
+    public void configureTransport(String type) {
+        this.transportType = type;
+        rebuildTransport();
+    }
+
+    private void rebuildTransport() {
+        HttpTransport previous = transport;
+        transport = HttpTransport.create(transportType, timeoutMs, ioExecutor);
+        previous.close();
+    }
+
+    /**
+     * Remplace l'executor des appels HTTP : "virtual" (un thread virtuel par requête)
+     * ou "platform" (pool borné de threads, avec file d'attente de taille queueSize).
+     */
+    public void configureExecutor(String type, int threads, int queueSize) {
+        IoExecutor previous = ioExecutor;
+        ioExecutor = IoExecutor.create(type, threads, queueSize);
+        rebuildTransport();
+        previous.shutdown();
+    }
+
+    public IoExecutor getIoExecutor() { return ioExecutor; }
+
+    /** Vue stable sur l'executor d'I/O courant : reste valable après un configureExecutor. */
+    public Executor getAsyncExecutor() { return asyncExecutor; }
+
+    /** Remplace la source des prix (voir {@link PriceSource#fromConfig}). */
+    public void setSource(PriceSource source) {
+        PriceSource previous = this.source;
+        this.source = source;
+        previous.close();
+    }
+
+    public PriceSource getSource() { return source; }
+
+    /** Transport HTTP partagé, à utiliser par les sources qui en ont besoin. */
+    public HttpTransport getHttp() { return http; }
+
+    public CoinRegistry getCoinRegistry() { return coins; }
+
+    /** Faux si la source courante sait que ce symbole n'existe pas. */
+    public boolean isKnownSymbol(String symbol) {
+        return source.isKnown(symbol);
+    }
+
+    /**
+     * Active (ou coupe si enabled = false) le flux de prix WebSocket. Seuls les symboles déjà connus
+     * du cache sont mis à jour ; tant que le flux vit, leurs prix restent frais et aucune requête REST ne part.
+     * Le prix d'une paire cotée en quote (USDT par défaut) est enregistré tel quel comme prix en USD.
+     */
+    public void configureStream(boolean enabled, String url, String quote, int maxBackoffSeconds) {
+        PriceStream previous = stream;
+        stream = null;
+        if (previous != null) previous.close();
+        if (!enabled || url == null || url.isBlank()) return;
+        PriceStream next = new PriceStream(url, quote, maxBackoffSeconds, asyncExecutor, this::onStreamPrice);
+        stream = next;
+        syncStreamSymbols();
+        next.start();
+    }
+
+    /** Flux WebSocket actif, ou null. */
+    public PriceStream getStream() { return stream; }
+
+    /** Transmet au flux les symboles de la table quand de nouveaux y sont entrés. */
+    private void syncStreamSymbols() {
+        PriceStream s = stream;
+        int n = symbolTable.size();
+        if (s == null || s.getSymbolCount() == n) return;
+        List<String> names = new ArrayList<>(n);
+        for (int id = 0; id < n; id++) names.add(symbolTable.name(id));
+        s.setSymbols(names);
+    }
+
+    // Symbole déjà filtré par le flux : nom canonique de la table, trouvé sans allocation
+    private void onStreamPrice(String symbol, double price, long ts) {
+        int id = symbolTable.find(symbol);
+        if (id >= 0 && price > 0) store(id, price, ts);
+    }
+
+    /** Bus des changements de prix ; {@link PriceEventBus#bind} doit être appelé pour la livraison sur le thread principal. */
+    public PriceEventBus getEvents() { return events; }
+
+    /** Abonne un consommateur aux changements de prix du cache. */
+    public PriceEventBus.Subscription subscribe(Consumer<PriceTick> listener, PriceEventBus.DeliveryMode mode) {
+        return events.subscribe(listener, mode);
+    }
+
+    /** Arrête les tâches de fond et l'executor HTTP (à appeler dans onDisable). */
+    public void shutdown() {
+        stopRefreshAhead();
+        configureStream(false, null, null, 0);
+        if (snapshotTask != null) snapshotTask.cancel();
+        snapshotTask = null;
+        if (snapshotFile != null) saveSnapshot(snapshotFile);
+        events.close();
+        source.close();
+        if (hedgeSource != null) hedgeSource.close();
+        transport.close();
+        ioExecutor.shutdown();
+    }
+
+    /**
+     * Configure la durée de cache et le mode refresh-ahead.
+     * En mode refresh-ahead, une valeur expirée reste servie immédiatement (rafraîchie en tâche de fond)
+     * tant qu'elle a moins de maxStaleSeconds ; au-delà, l'appelant attend la requête.
+     */
+    public void configureCache(int ttlSeconds, boolean refreshAhead, int refreshAheadSeconds, int maxStaleSeconds) {
+        this.cacheDurationMs = Math.max(5, ttlSeconds) * 1000L;
+        this.refreshAhead = refreshAhead;
+        this.refreshAheadMs = Math.min(Math.max(0, refreshAheadSeconds) * 1000L, cacheDurationMs / 2);
+        this.maxStaleMs = Math.max(cacheDurationMs, Math.max(0, maxStaleSeconds) * 1000L);
+    }
+
+    /**
+     * TTL par symbole selon la volatilité réalisée : ttl = targetMove² / variance par ms,
+     * borné par [minSeconds, maxSeconds]. Les symboles calmes sont rafraîchis rarement,
+     * les volatils plus souvent, pour le même budget de requêtes.
+     * targetMovePct : variation attendue (en %) tolérée avant de considérer le prix périmé.
+     */
+    public void configureAdaptiveTtl(boolean enabled, int minSeconds, int maxSeconds, double targetMovePct) {
+        this.adaptiveTtl = enabled;
+        this.minTtlMs = Math.max(5, minSeconds) * 1000L;
+        this.maxTtlMs = Math.max(minTtlMs, Math.max(0, maxSeconds) * 1000L);
+        this.targetMove = Math.max(0.0001, targetMovePct / 100.0);
+        if (!enabled) {
+            for (int id = 0, n = symbolTable.size(); id < n; id++) symbolTable.setTtl(id, 0L);
+        }
+    }
+
+    /**
+     * Met à jour le TTL du symbole à partir de sa variance réalisée des log-rendements par milliseconde
+     * (fournie par la série temporelle). Sans effet si le TTL adaptatif est désactivé.
+     */
+    public void updateVolatility(String symbol, double variancePerMs) {
+        if (!adaptiveTtl || Double.isNaN(variancePerMs) || variancePerMs < 0) return;
+        int id = symbolTable.find(symbol);
+        if (id < 0) return;
+        double ttl = variancePerMs == 0 ? maxTtlMs : targetMove * targetMove / variancePerMs;
+        symbolTable.setTtl(id, (long) Math.min(maxTtlMs, Math.max(minTtlMs, ttl)));
+    }
+
+    /** TTL effectif (ms) d'un symbole. */
+    public long getTtlMs(int id) {
+        long ttl = symbolTable.ttl(id);
+        return ttl > 0 ? ttl : cacheDurationMs;
+    }
+
+    /** TTL appliqué à une lecture : un trade ne dépasse jamais ttl_seconds, même si le TTL adaptatif est plus long. */
+    private long ttlFor(int id, Priority priority) {
+        long ttl = getTtlMs(id);
+        return priority == Priority.TRADE ? Math.min(ttl, cacheDurationMs) : ttl;
+    }
+
+    /**
+     * Durée pendant laquelle un symbole absent de la réponse de la source (ou en 404)
+     * n'est plus redemandé : les lectures sont rejetées sans appel réseau.
+     */
+    public void configureNegativeCache(int ttlSeconds) {
+        this.negativeTtlMs = Math.max(0, ttlSeconds) * 1000L;
+        if (negativeTtlMs == 0) negativeUntil.clear();
+    }
+
+    /**
+     * Démarre le rafraîchissement proactif des symboles consultés récemment,
+     * peu avant l'expiration de leur cache.
+     */
+    public void startRefreshAhead(Plugin plugin) {
+        stopRefreshAhead();
+        if (!refreshAhead) return;
+        refreshAheadTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::refreshHotSymbols, 100L, 100L);
+    }
+
+    public void stopRefreshAhead() {
+        if (refreshAheadTask != null) refreshAheadTask.cancel();
+        refreshAheadTask = null;
+    }
+
+    /**
+     * Recharge un instantané du cache écrit par {@link #saveSnapshot}. Les prix restaurés gardent leur date
+     * d'observation et sont marqués comme tels : servis tout de suite s'ils ont moins de max_stale_seconds
+     * (stale-while-revalidate), rafraîchis au premier accès, et jamais utilisés pour un trade.
+     * Un instantané d'une autre source est ignoré.
+     * @return le nombre de prix restaurés
+     */
+    public int loadSnapshot(File file) {
+        if (!file.isFile()) return 0;
+        PriceSnapshot.Content content;
+        try {
+            content = PriceSnapshot.read(file);
+        } catch (IOException e) {
+            Bukkit.getLogger().warning("[Crypto] Instantané des prix illisible (" + file.getName() + ") : " + e.getMessage());
+            return 0;
+        }
+        if (!content.source().equals(source.getName())) return 0;
+        int restored = 0;
+        for (PriceSnapshot.Entry e : content.entries()) {
+            if (Double.isNaN(e.price()) || e.price() <= 0) continue;
+            int id = symbolTable.intern(e.symbol());
+            // Ne jamais écraser un prix plus récent obtenu entre-temps
+            if (!Double.isNaN(symbolTable.price(id))) continue;
+            symbolTable.restore(id, e.price(), e.ts());
+            restored++;
+        }
+        syncStreamSymbols();
+        return restored;
+    }
+
+    /** Écrit le cache courant (prix, date, source) sur disque. */
+    public synchronized void saveSnapshot(File file) {
+        List<PriceSnapshot.Entry> entries = new ArrayList<>();
+        for (int id = 0, n = symbolTable.size(); id < n; id++) {
+            double price = symbolTable.price(id);
+            if (!Double.isNaN(price)) entries.add(new PriceSnapshot.Entry(symbolTable.name(id), price, symbolTable.updatedAt(id)));
+        }
+        if (entries.isEmpty()) return;
+        try {
+            PriceSnapshot.write(file, source.getName(), entries);
+        } catch (IOException e) {
+            Bukkit.getLogger().warning("[Crypto] Impossible d'écrire l'instantané des prix : " + e.getMessage());
+        }
+    }
+
+    /** Sauvegarde périodique de l'instantané (et une dernière fois dans {@link #shutdown()}). */
+    public void startSnapshots(Plugin plugin, File file, int periodSeconds) {
+        if (snapshotTask != null) snapshotTask.cancel();
+        snapshotFile = file;
+        long period = Math.max(30, periodSeconds) * 20L;
+        snapshotTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> saveSnapshot(file), period, period);
+    }
+
+    private void refreshHotSymbols() {
         long now = System.currentTimeMillis();
-        if (now < circuitOpenUntil) return ApiStatus.DOWN;
-        if (recentErrors > 0) return ApiStatus.DEGRADED;
-        return ApiStatus.OK;
+        negativeUntil.values().removeIf(until -> until <= now);
+        List<String> due = new ArrayList<>();
+        for (int id = 0, n = symbolTable.size(); id < n; id++) {
+            if (now - symbolTable.accessedAt(id) > HOT_WINDOW_MS) continue;
+            long ttl = getTtlMs(id);
+            if (now - symbolTable.updatedAt(id) >= ttl - Math.min(refreshAheadMs, ttl / 2)) due.add(symbolTable.name(id));
+        }
+        revalidate(due, Priority.SAMPLER);
     }
 
-    private void onError() {
-        recentErrors++;
-        if (recentErrors >= errorThreshold) {
-            circuitOpenUntil = System.currentTimeMillis() + openSeconds * 1000L;
-            recentErrors = 0; // reset counter when opened
+    /** Rafraîchit en arrière-plan les symboles qui ne sont pas déjà en cours de récupération. */
+    private void revalidate(List<String> syms, Priority priority) {
+        if (syms.isEmpty() || breaker.isOpen()) return;
+        Map<String, CompletableFuture<Double>> claimed = new LinkedHashMap<>();
+        for (String sym : syms) {
+            CompletableFuture<Double> mine = new CompletableFuture<>();
+            if (inFlight.putIfAbsent(sym, mine) == null) claimed.put(sym, mine);
         }
+        if (!claimed.isEmpty()) fetchClaimed(claimed, priority);
     }
 
-    private void onSuccess() {
-        recentErrors = 0;
+    public ApiStatus getApiStatus() {
+        return switch (breaker.getState()) {
+            case OPEN -> ApiStatus.DOWN;
+            case HALF_OPEN -> ApiStatus.DEGRADED;
+            case CLOSED -> breaker.getWindowFailures() > 0 ? ApiStatus.DEGRADED : ApiStatus.OK;
+        };
     }
 
+    /** État détaillé du circuit breaker (compteurs de transitions, rejets). */
+    public CircuitBreaker getCircuitBreaker() { return breaker; }
+
+    /** Nombre de demandes de prix rattachées à une requête déjà en cours. */
+    public long getCoalescedCalls() { return coalescedCalls.get(); }
+
+    /** Nombre de requêtes HTTP réellement envoyées (retries compris). */
+    public long getNetworkCalls() { return networkCalls.get(); }
+
+    public int getInFlightCount() { return inFlight.size(); }
+
+    /** Nombre de lectures refusées sans appel réseau (ticker inconnu ou dans le cache négatif). */
+    public long getRejectedLookups() { return rejectedLookups.get(); }
+
+    public int getNegativeCacheSize() { return negativeUntil.size(); }
+
     /**
      * Récupère le prix USD d'une crypto.
-     * Si le cache est récent, on l'utilise, sinon on fait une requête à CoinGecko.
+     * Si le cache est récent, on l'utilise, sinon on interroge la source (CoinGecko par défaut).
+     * Le future échoue avec {@link NoPriceException} si aucun prix n'est connu.
      */
     public CompletableFuture<Double> getPriceUsd(String symbol) {
+        return getPriceUsd(symbol, Priority.COMMAND);
+    }
+
+    public CompletableFuture<Double> getPriceUsd(String symbol, Priority priority) {
         String sym = symbol.toLowerCase(Locale.ROOT);
+        return getPricesUsd(List.of(sym), priority).thenApply(prices -> {
+            Double price = prices.get(sym);
+            if (price == null) throw new NoPriceException(sym);
+            return price;
+        });
+    }
+
+    public CompletableFuture<Map<String, Double>> getPricesUsd(Collection<String> symbols) {
+        return getPricesUsd(symbols, Priority.COMMAND);
+    }
 
-        // Si le cache est encore frais (<60s), retourne directement la valeur
-        if (cache.containsKey(sym) && (System.currentTimeMillis() - lastUpdate.getOrDefault(sym, 0L)) < CACHE_DURATION) {
-            return CompletableFuture.completedFuture(cache.get(sym));
+    /**
+     * Récupère les prix USD de plusieurs cryptos.
+     * Les symboles encore frais (ou assez récents en mode refresh-ahead) sont servis depuis le cache ; les autres sont regroupés
+     * dans une seule requête à la source (ids=a,b,c pour CoinGecko) au lieu d'un appel par symbole.
+     * La map retournée est indexée par symbole en minuscules ; un symbole sans aucun prix connu
+     * (inconnu, absent de la réponse, ou source indisponible sans cache) en est absent.
+     * <p>
+     * La priorité décide de la voie du limiteur de débit : sans budget, les requêtes basse priorité
+     * sont abandonnées (cache servi) alors que les trades attendent le prochain jeton. Un trade
+     * n'accepte pas non plus de valeur au-delà du TTL, même en mode refresh-ahead.
+     */
+    public CompletableFuture<Map<String, Double>> getPricesUsd(Collection<String> symbols, Priority priority) {
+        Map<String, Double> result = new HashMap<>();
+        List<String> stale = new ArrayList<>();
+        List<String> background = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        PriceSource src = source;
+        for (String symbol : symbols) {
+            if (isRejected(symbol, src, now)) {
+                // Ticker inconnu ou récemment absent de la source : ni appel réseau, ni entrée dans la table
+                rejectedLookups.incrementAndGet();
+                continue;
+            }
+            int id = symbolTable.intern(symbol);
+            String sym = symbolTable.name(id);
+            if (result.containsKey(sym) || stale.contains(sym)) continue;
+            symbolTable.touch(id, now);
+            double cached = symbolTable.price(id);
+            long age = now - symbolTable.updatedAt(id);
+            long ttl = ttlFor(id, priority);
+            long freshFor = refreshAhead ? ttl - Math.min(refreshAheadMs, ttl / 2) : ttl;
+            // Un prix restauré d'un instantané est toujours revalidé, et jamais servi à un trade
+            boolean restored = symbolTable.isRestored(id);
+            boolean known = !Double.isNaN(cached) && !(restored && priority == Priority.TRADE);
+            if (known && age < freshFor && !restored) {
+                result.put(sym, cached);
+            } else if (known && refreshAhead && age < (priority == Priority.TRADE ? ttl : Math.max(ttl, maxStaleMs))) {
+                // Stale-while-revalidate : valeur connue servie tout de suite, rafraîchie en fond
+                result.put(sym, cached);
+                background.add(sym);
+            } else {
+                stale.add(sym);
+            }
         }
+        syncStreamSymbols();
+        revalidate(background, priority);
+        if (stale.isEmpty()) return CompletableFuture.completedFuture(result);
 
         // Circuit breaker ouvert -> pas d'appel réseau
-        if (System.currentTimeMillis() < circuitOpenUntil) {
-            Double cached = cache.get(sym);
-            return CompletableFuture.completedFuture(cached != null ? cached : 1.0);
-        }
-
-        // Requête asynchrone (non bloquante)
-        return CompletableFuture.supplyAsync(() -> {
-            for (int attempt = 0; attempt <= retryCount; attempt++) {
-                try {
-                    String apiUrl = "https://api.coingecko.com/api/v3/simple/price?ids=" +
-                            getCoinGeckoId(sym) + "&vs_currencies=usd";
-                    HttpURLConnection conn = (HttpURLConnection) new URL(apiUrl).openConnection();
-                    conn.setRequestMethod("GET");
-                    conn.setConnectTimeout(timeoutMs);
-                    conn.setReadTimeout(timeoutMs);
-
-                    if (conn.getResponseCode() != 200) {
-                        throw new RuntimeException("API error: " + conn.getResponseCode());
-                    }
-
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-                        StringBuilder response = new StringBuilder();
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            response.append(line);
-                        }
-                        JSONObject json = new JSONObject(response.toString());
-                        String id = getCoinGeckoId(sym);
-                        double price = json.getJSONObject(id).getDouble("usd");
-
-                        cache.put(sym, price);
-                        lastUpdate.put(sym, System.currentTimeMillis());
-                        onSuccess();
-                        return price;
-                    }
-                } catch (Exception e) {
-                    onError();
-                    Bukkit.getLogger().warning("[Crypto] Erreur lors de la récupération du prix de " + sym + " (tentative " + (attempt+1) + ") : " + e.getMessage());
-                    // boucle pour retry
+        if (breaker.isOpen()) {
+            for (String sym : stale) {
+                double cached = cachedFor(sym, priority);
+                if (!Double.isNaN(cached)) result.put(sym, cached);
+            }
+            return CompletableFuture.completedFuture(result);
+        }
+
+        // Single-flight : un symbole déjà en cours de récupération partage le future existant
+        Map<String, CompletableFuture<Double>> pending = new HashMap<>();
+        Map<String, CompletableFuture<Double>> claimed = new LinkedHashMap<>();
+        List<String> joined = new ArrayList<>();
+        for (String sym : stale) {
+            CompletableFuture<Double> mine = new CompletableFuture<>();
+            CompletableFuture<Double> existing = inFlight.putIfAbsent(sym, mine);
+            if (existing != null) {
+                coalescedCalls.incrementAndGet();
+                pending.put(sym, existing);
+                joined.add(sym);
+            } else {
+                claimed.put(sym, mine);
+                pending.put(sym, mine);
+            }
+        }
+        if (!claimed.isEmpty()) fetchClaimed(claimed, priority);
+
+        CompletableFuture<Map<String, Double>> all = CompletableFuture.allOf(pending.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+            for (Map.Entry<String, CompletableFuture<Double>> e : pending.entrySet()) {
+                // Un trade relit le cache : la requête partagée a pu se replier sur une valeur trop vieille pour lui
+                double price = priority == Priority.TRADE ? cachedFor(e.getKey(), priority) : e.getValue().join();
+                if (!Double.isNaN(price)) result.put(e.getKey(), price);
+            }
+            return result;
+        });
+        if (priority != Priority.TRADE || joined.isEmpty()) return all;
+
+        // Un trade rattaché à une requête basse priorité abandonnée faute de budget : on refait l'appel en voie trade
+        return all.thenCompose(prices -> {
+            List<String> missed = new ArrayList<>();
+            for (String sym : joined) {
+                if (symbolTable.updatedAt(symbolTable.find(sym)) < now) missed.add(sym);
+            }
+            if (missed.isEmpty()) return CompletableFuture.completedFuture(prices);
+            return fetchBatch(missed, Priority.TRADE).thenApply(fresh -> {
+                prices.putAll(fresh);
+                return prices;
+            });
+        });
+    }
+
+    /**
+     * Lance la requête asynchrone (non bloquante) pour les symboles réservés dans inFlight,
+     * découpée si la liste d'ids est trop longue, puis libère les réservations.
+     */
+    private void fetchClaimed(Map<String, CompletableFuture<Double>> claimed, Priority priority) {
+        List<String> syms = new ArrayList<>(claimed.keySet());
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        int batchSize = Math.max(1, source.getMaxBatchSize());
+        for (int i = 0; i < syms.size(); i += batchSize) {
+            chunks.add(fetchBatch(syms.subList(i, Math.min(syms.size(), i + batchSize)), priority).thenAccept(prices -> {
+                for (Map.Entry<String, Double> e : prices.entrySet()) {
+                    CompletableFuture<Double> f = claimed.get(e.getKey());
+                    inFlight.remove(e.getKey(), f);
+                    f.complete(e.getValue());
                 }
+            }));
+        }
+        // Borne globale (tentatives, backoff et lecture des corps compris) : le filet de sécurité passe toujours
+        long deadlineMs = (timeoutMs + backoffMaxMs) * (retryCount + 1L) + 1000L;
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).orTimeout(deadlineMs, TimeUnit.MILLISECONDS).whenComplete((v, ex) -> {
+            // Filet de sécurité : aucune réservation ne doit rester bloquée
+            for (Map.Entry<String, CompletableFuture<Double>> e : claimed.entrySet()) {
+                inFlight.remove(e.getKey(), e.getValue());
+                e.getValue().complete(cachedOr(e.getKey(), Double.NaN));
             }
-            // Si tous les essais échouent, ouvrir potentiellement le circuit et renvoyer cache ou 1.0
-            return cache.getOrDefault(sym, 1.0);
         });
     }
 
     /**
-     * Convertit le symbole en ID CoinGecko
+     * Requête asynchrone à la source pour un lot de symboles (en minuscules).
+     * Remplit le cache pour tous les symboles présents dans la réponse ; les symboles en échec
+     * renvoient le cache s'il existe (pour un trade, seulement s'il a moins que le TTL, voir {@link #cachedFor}).
+     * Un symbole absent d'une réponse valide (ou en 404) entre dans le cache négatif.
      */
-    private String getCoinGeckoId(String symbol) {
-        return switch (symbol.toLowerCase(Locale.ROOT)) {
-            case "btc" -> "bitcoin";
-            case "eth" -> "ethereum";
-            case "sol" -> "solana";
-            case "doge" -> "dogecoin";
-            case "bnb" -> "binancecoin";
-            case "ada" -> "cardano";
-            default -> symbol.toLowerCase(Locale.ROOT);
-        };
+    private CompletableFuture<Map<String, Double>> fetchBatch(List<String> symbols, Priority priority) {
+        return fetchWithRetry(symbols, priority, 0).handle((fetched, ex) -> {
+            Map<String, Double> prices = new HashMap<>();
+            long now = System.currentTimeMillis();
+            if (fetched != null) {
+                for (Map.Entry<String, Double> e : fetched.entrySet()) {
+                    store(symbolTable.intern(e.getKey()), e.getValue(), now);
+                    prices.put(e.getKey(), e.getValue());
+                }
+            }
+            boolean notFound = ex == null || isNotFound(ex);
+            for (String sym : symbols) {
+                if (prices.containsKey(sym)) continue;
+                if (notFound) markMissing(sym, now);
+                double cached = cachedFor(sym, priority);
+                if (!Double.isNaN(cached)) prices.put(sym, cached);
+            }
+            return prices;
+        });
+    }
+
+    private boolean isRejected(String symbol, PriceSource src, long now) {
+        if (!src.isKnown(symbol)) return true;
+        if (negativeUntil.isEmpty()) return false;
+        String sym = symbol.toLowerCase(Locale.ROOT);
+        Long until = negativeUntil.get(sym);
+        if (until == null) return false;
+        if (until > now) return true;
+        negativeUntil.remove(sym, until);
+        return false;
+    }
+
+    private void markMissing(String sym, long now) {
+        if (negativeTtlMs <= 0) return;
+        if (negativeUntil.size() >= MAX_NEGATIVE_ENTRIES) {
+            negativeUntil.values().removeIf(until -> until <= now);
+            if (negativeUntil.size() >= MAX_NEGATIVE_ENTRIES) return;
+        }
+        negativeUntil.put(sym, now + negativeTtlMs);
+    }
+
+    private static boolean isNotFound(Throwable ex) {
+        Throwable cause = ex;
+        // Une source peut aussi envelopper l'erreur HTTP dans une UncheckedIOException
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof HttpTransport.HttpStatusException status && status.getStatus() == 404;
+    }
+
+    /** Met à jour le cache et notifie les abonnés si le prix a changé. */
+    private void store(int id, double price, long now) {
+        double old = symbolTable.update(id, price, now);
+        if (old != price && events.hasSubscribers()) {
+            events.publish(new PriceTick(id, symbolTable.name(id), old, price, now));
+        }
+    }
+
+    /**
+     * Appel à la source avec retry et mise à jour du circuit breaker.
+     * Une erreur de décodage compte comme un échec, comme une erreur réseau.
+     */
+    private CompletableFuture<Map<String, Double>> fetchWithRetry(List<String> symbols, Priority priority, int attempt) {
+        // Circuit ouvert, ou sonde half-open déjà partie : pas d'appel ni de jeton consommé, l'appelant sert le cache
+        if (!breaker.allowRequest()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("circuit breaker ouvert"));
+        }
+        if (!rateLimiter.tryAcquire(priority)) {
+            // Aucun appel ne part : une éventuelle sonde half-open reste disponible
+            breaker.releaseProbe();
+            if (priority != Priority.TRADE) {
+                // Budget épuisé : requête basse priorité abandonnée, l'appelant sert le cache
+                return CompletableFuture.failedFuture(new IllegalStateException("limite de débit atteinte"));
+            }
+            // Un trade attend le prochain jeton plutôt que de renoncer
+            long waitMs = Math.max(50L, rateLimiter.millisUntilAvailable(priority));
+            return CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(waitMs, TimeUnit.MILLISECONDS, ioExecutor))
+                    .thenCompose(v -> fetchWithRetry(symbols, priority, attempt));
+        }
+        PriceSource src = source;
+        return callSource(src, symbols, priority).thenApply(prices -> {
+            breaker.onSuccess();
+            return prices;
+        }).exceptionallyCompose(ex -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (isNotFound(cause)) {
+                // La source a répondu : un 404 n'est pas une panne et ne se corrige pas en réessayant
+                breaker.onSuccess();
+                return CompletableFuture.failedFuture(cause);
+            }
+            breaker.onError();
+            Bukkit.getLogger().warning("[Crypto] Erreur lors de la récupération des prix de " + symbols + " via " + src.getName() + " (tentative " + (attempt+1) + ") : " + cause.getMessage());
+            if (attempt < retryCount) {
+                long delay = backoffDelayMs(attempt);
+                if (delay <= 0) return fetchWithRetry(symbols, priority, attempt + 1);
+                return CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, ioExecutor))
+                        .thenCompose(v -> fetchWithRetry(symbols, priority, attempt + 1));
+            }
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    private long backoffDelayMs(int attempt) {
+        long cap = Math.min(backoffMaxMs, backoffBaseMs << Math.min(attempt, 20));
+        return cap <= 0 ? 0L : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Un appel à la source, éventuellement couvert par une seconde requête (hedging).
+     * Le future échoue seulement si toutes les requêtes lancées échouent.
+     */
+    private CompletableFuture<Map<String, Double>> callSource(PriceSource src, List<String> symbols, Priority priority) {
+        CompletableFuture<Map<String, Double>> primary = invoke(src, symbols);
+        boolean eligible = hedging && (!hedgeTradeOnly || priority == Priority.TRADE) && latency.count() >= 20;
+        if (!eligible) return primary;
+
+        CompletableFuture<Map<String, Double>> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        primary.whenComplete((prices, ex) -> settle(result, outstanding, prices, ex, false));
+        long delay = Math.max(hedgeMinDelayMs, latency.quantile(hedgeQuantile));
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, ioExecutor).execute(() -> {
+            if (result.isDone()) return;
+            if (breaker.getState() != CircuitBreaker.State.CLOSED || !rateLimiter.tryAcquire(priority)) return;
+            if (!joinOutstanding(outstanding)) return;
+            hedgedCalls.incrementAndGet();
+            PriceSource secondary = hedgeSource;
+            invoke(secondary != null ? secondary : src, symbols)
+                    .whenComplete((prices, ex) -> settle(result, outstanding, prices, ex, true));
+        });
+        return result;
+    }
+
+    /**
+     * Ajoute une requête aux requêtes en cours, sauf si toutes ont déjà échoué (compteur à 0) :
+     * vérification et incrément atomiques, sinon la couverture partirait pour un résultat déjà en échec.
+     */
+    static boolean joinOutstanding(AtomicInteger outstanding) {
+        int n;
+        do {
+            n = outstanding.get();
+            if (n == 0) return false;
+        } while (!outstanding.compareAndSet(n, n + 1));
+        return true;
+    }
+
+    private void settle(CompletableFuture<Map<String, Double>> result, AtomicInteger outstanding,
+                        Map<String, Double> prices, Throwable ex, boolean hedge) {
+        if (ex == null) {
+            if (result.complete(prices) && hedge) hedgeWins.incrementAndGet();
+        } else if (outstanding.decrementAndGet() == 0) {
+            result.completeExceptionally(ex);
+        }
+    }
+
+    /** Envoie la requête et mesure la latence des réponses réussies. */
+    private CompletableFuture<Map<String, Double>> invoke(PriceSource src, List<String> symbols) {
+        networkCalls.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<Map<String, Double>> response;
+        try {
+            response = src.fetchUsd(symbols);
+        } catch (RuntimeException e) {
+            // ex : executor saturé (RejectedExecutionException)
+            return CompletableFuture.failedFuture(e);
+        }
+        // Le timeout de la requête HTTP ne couvre que les en-têtes : le corps aussi doit arriver dans les temps
+        return response.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((prices, ex) -> {
+            if (ex == null) latency.record((System.nanoTime() - start) / 1_000_000L);
+        });
     }
 
     /**
      * Permet de forcer le rafraîchissement d’un symbole
      */
     public void refresh(String symbol) {
-        lastUpdate.put(symbol.toLowerCase(Locale.ROOT), 0L);
+        negativeUntil.remove(symbol.toLowerCase(Locale.ROOT));
+        int id = symbolTable.find(symbol);
+        if (id >= 0) symbolTable.expire(id);
     }
 
     public Double getCachedUsd(String symbol) {
-        String sym = symbol.toLowerCase(Locale.ROOT);
-        return cache.get(sym);
+        double price = getCachedUsdOrNaN(symbol);
+        return Double.isNaN(price) ? null : price;
     }
 
-    // Déclenche un rafraîchissement asynchrone (ne bloque pas)
+    /**
+     * Comme {@link #getCachedUsd(String)} mais sans boxing : NaN si aucun prix connu.
+     * Seuls les symboles déjà dans la table sont lus : un ticker inconnu n'y entre pas.
+     */
+    public double getCachedUsdOrNaN(String symbol) {
+        int id = symbolTable.find(symbol);
+        if (id < 0) return Double.NaN;
+        // Symbole affiché : il reste dans le rafraîchissement proactif
+        symbolTable.touch(id, System.currentTimeMillis());
+        return symbolTable.price(id);
+    }
+
+    /**
+     * Prix en cache acceptable pour cette priorité quand la source ne répond pas, NaN sinon.
+     * Un trade n'accepte ni un prix restauré d'un instantané ni un prix plus vieux que son TTL (voir {@link #ttlFor}).
+     */
+    private double cachedFor(String sym, Priority priority) {
+        int id = symbolTable.find(sym);
+        if (id < 0) return Double.NaN;
+        if (priority == Priority.TRADE
+                && (symbolTable.isRestored(id) || System.currentTimeMillis() - symbolTable.updatedAt(id) >= ttlFor(id, priority))) {
+            return Double.NaN;
+        }
+        return symbolTable.price(id);
+    }
+
+    private double cachedOr(String sym, double fallback) {
+        int id = symbolTable.find(sym);
+        double price = id < 0 ? Double.NaN : symbolTable.price(id);
+        return Double.isNaN(price) ? fallback : price;
+    }
+
+    // Déclenche un rafraîchissement asynchrone (ne bloque pas), en voie placeholder/GUI
     public void refreshAsync(String symbol) {
         // Appelle votre méthode async ; elle mettra à jour le cache quand prête
-        getPriceUsd(symbol);
+        getPriceUsd(symbol, Priority.PLACEHOLDER);
+    }
+
+    // Variante groupée : un seul appel réseau pour tous les symboles expirés
+    public void refreshAsync(Collection<String> symbols) {
+        if (!symbols.isEmpty()) getPricesUsd(symbols, Priority.PLACEHOLDER);
     }
 }
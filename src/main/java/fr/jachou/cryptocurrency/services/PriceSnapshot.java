@@ -0,0 +1,69 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instantané binaire du cache de prix, relu au démarrage pour ne pas repartir à vide.
+ * Format : magic, version, nom de la source, nombre d'entrées puis (symbole, prix, date ms) par entrée.
+ */
+public final class PriceSnapshot {
+
+    private static final int MAGIC = 0x43525053; // "CRPS"
+    private static final short VERSION = 1;
+
+    public record Entry(String symbol, double price, long ts) {}
+
+    public record Content(String source, List<Entry> entries) {}
+
+    private PriceSnapshot() {}
+
+    /** Écrit d'abord dans un fichier temporaire puis le renomme, pour ne jamais laisser un fichier tronqué. */
+    public static void write(File file, String source, List<Entry> entries) throws IOException {
+        Path target = file.toPath();
+        Path tmp = target.resolveSibling(file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeUTF(source);
+            out.writeInt(entries.size());
+            for (Entry e : entries) {
+                out.writeUTF(e.symbol());
+                out.writeDouble(e.price());
+                out.writeLong(e.ts());
+            }
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Certains systèmes de fichiers ne gèrent pas le déplacement atomique
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Relit un instantané ; IOException si le fichier est absent, corrompu ou d'une autre version. */
+    public static Content read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC) throw new IOException("format inconnu");
+            short version = in.readShort();
+            if (version != VERSION) throw new IOException("version " + version + " non supportée");
+            String source = in.readUTF();
+            int count = in.readInt();
+            if (count < 0) throw new IOException("nombre d'entrées invalide");
+            List<Entry> entries = new ArrayList<>(Math.min(count, 4096));
+            for (int i = 0; i < count; i++) {
+                entries.add(new Entry(in.readUTF(), in.readDouble(), in.readLong()));
+            }
+            return new Content(source, entries);
+        }
+    }
+}
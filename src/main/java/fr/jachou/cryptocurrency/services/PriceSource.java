@@ -0,0 +1,77 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Fournisseur de prix utilisé par PriceService.
+ * Cache, single-flight, retries et circuit breaker restent côté PriceService :
+ * une source se contente de répondre à une demande groupée.
+ */
+public interface PriceSource {
+
+    enum Health { UP, DEGRADED, DOWN }
+
+    String getName();
+
+    /** Convertit un symbole (minuscules) en identifiant propre à la source. */
+    String resolveId(String symbol);
+
+    /**
+     * Prix USD d'un lot de symboles (minuscules), en une seule requête si possible.
+     * Les symboles inconnus de la source sont simplement absents de la map.
+     */
+    CompletableFuture<Map<String, Double>> fetchUsd(List<String> symbols);
+
+    Health getHealth();
+
+    /** Faux si la source sait que ce symbole n'existe pas (aucun appel ne sera fait pour lui). */
+    default boolean isKnown(String symbol) { return true; }
+
+    /** Vrai si la source sait fournir un historique via fetchHistoryUsd. */
+    default boolean supportsHistory() { return false; }
+
+    /**
+     * Historique USD du symbole (minuscules) sur les derniers jours, transmis point par point
+     * du plus ancien au plus récent.
+     * @return le nombre de points transmis (0 si la source n'a pas d'historique)
+     */
+    default CompletableFuture<Integer> fetchHistoryUsd(String symbol, int days, JsonPriceDecoder.PointSink sink) {
+        return CompletableFuture.completedFuture(0);
+    }
+
+    /** Nombre max de symboles par appel à fetchUsd. */
+    default int getMaxBatchSize() { return 100; }
+
+    default void close() {}
+
+    /**
+     * Construit la source décrite par la section "api" de la config :
+     * source: coingecko (défaut) | replay | synthetic. executor porte les tâches asynchrones de la source.
+     */
+    static PriceSource fromConfig(ConfigurationSection api, File dataFolder, HttpTransport http, int timeoutMs, CoinRegistry coins, Executor executor) {
+        String type = api == null ? "coingecko" : api.getString("source", "coingecko");
+        return create(type, api, dataFolder, http, timeoutMs, coins, executor);
+    }
+
+    /** Construit une source par son nom, avec ses réglages lus dans la section "api". */
+    static PriceSource create(String type, ConfigurationSection api, File dataFolder, HttpTransport http, int timeoutMs, CoinRegistry coins, Executor executor) {
+        return switch (type.toLowerCase(Locale.ROOT)) {
+            case "replay" -> new ReplayPriceSource(
+                    new File(dataFolder, api.getString("replay.file", "replay.csv")),
+                    api.getBoolean("replay.loop", true),
+                    api.getDouble("replay.speed", 0.0));
+            case "synthetic" -> new SyntheticPriceSource(
+                    api.getDouble("synthetic.volatility", 0.002),
+                    api.getLong("synthetic.latency_ms", 0L),
+                    executor);
+            default -> new CoinGeckoPriceSource(http, timeoutMs, coins);
+        };
+    }
+}
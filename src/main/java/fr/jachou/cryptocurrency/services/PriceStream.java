@@ -0,0 +1,327 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.bukkit.Bukkit;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flux de prix en continu via WebSocket (format "miniTicker" de Binance :
+ * objets plats ou tableau d'objets avec "s" = paire, ex. BTCUSDT, et "c" = dernier prix).
+ * <p>
+ * Les fragments de texte sont accumulés puis décodés sans construire d'arbre JSON. Seules les paires des
+ * symboles suivis ({@link #setSymbols}) sont retenues, reconnues dans le message sans allocation ;
+ * le prix d'une paire cotée dans la devise de cotation (USDT par défaut) est traité comme un prix en USD.
+ * <p>
+ * En cas de coupure, reconnexion avec backoff exponentiel (plafonné, avec jitter) ;
+ * un flux silencieux trop longtemps est considéré comme coupé. Pendant la coupure,
+ * les prix vieillissent dans le cache et PriceService repasse naturellement par la source REST.
+ */
+public class PriceStream {
+
+    /** Reçoit les prix décodés : symbole suivi, tel que passé à {@link #setSymbols}, prix, date ms. */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(String symbol, double price, long ts);
+    }
+
+    private static final long SILENCE_MS = 30_000;
+    private static final long BASE_BACKOFF_MS = 1000;
+
+    private final URI uri;
+    private final String quote;
+    private final long maxBackoffMs;
+    private final long baseBackoffMs;
+    private final long silenceMs;
+    private final Executor executor;
+    private final Sink sink;
+    private final HttpClient client;
+
+    private volatile PairFilter pairs = PairFilter.EMPTY;
+    private volatile WebSocket socket;
+    private volatile boolean closed;
+    private volatile long lastMessageAt;
+    private int failures; // échecs consécutifs, protégé par le verrou de l'instance
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    public PriceStream(String url, String quote, int maxBackoffSeconds, Executor executor, Sink sink) {
+        this(url, quote, Math.max(1, maxBackoffSeconds) * 1000L, BASE_BACKOFF_MS, SILENCE_MS, executor, sink);
+    }
+
+    /** Délais en ms : plafond et base du backoff, silence toléré avant reconnexion (courts en test). */
+    PriceStream(String url, String quote, long maxBackoffMs, long baseBackoffMs, long silenceMs, Executor executor, Sink sink) {
+        this.uri = URI.create(url);
+        this.quote = quote.toUpperCase(Locale.ROOT);
+        this.maxBackoffMs = Math.max(1, maxBackoffMs);
+        this.baseBackoffMs = Math.max(1, baseBackoffMs);
+        this.silenceMs = Math.max(1, silenceMs);
+        this.executor = executor;
+        this.sink = sink;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
+                .build();
+    }
+
+    /** Remplace les symboles suivis : seules leurs paires (symbole + devise de cotation) sont transmises. */
+    public void setSymbols(Collection<String> symbols) {
+        pairs = new PairFilter(symbols, quote);
+    }
+
+    /** Nombre de symboles suivis. */
+    public int getSymbolCount() { return pairs.size(); }
+
+    public void start() {
+        connect();
+        watchdog();
+    }
+
+    private void connect() {
+        if (closed) return;
+        client.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .buildAsync(uri, new Listener())
+                .whenComplete((ws, ex) -> {
+                    if (ex != null) {
+                        Bukkit.getLogger().warning("[Crypto] Connexion au flux de prix impossible : " + ex.getMessage());
+                        scheduleReconnect(null);
+                    } else if (closed) {
+                        ws.abort();
+                    }
+                });
+    }
+
+    /** Planifie une reconnexion si la connexion qui échoue est bien la connexion courante (null : échec d'ouverture). */
+    private synchronized void scheduleReconnect(WebSocket failed) {
+        if (closed || socket != failed) return;
+        socket = null;
+        long base = Math.min(maxBackoffMs, baseBackoffMs << Math.min(failures, 16));
+        failures++;
+        reconnects.incrementAndGet();
+        long delay = base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+        CompletableFuture.runAsync(this::connect, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor));
+    }
+
+    /** Vérifie périodiquement que le flux vit encore ; un flux muet est coupé puis reconnecté. */
+    private void watchdog() {
+        if (closed) return;
+        CompletableFuture.runAsync(() -> {
+            WebSocket ws = socket;
+            if (ws != null && System.currentTimeMillis() - lastMessageAt > silenceMs) {
+                Bukkit.getLogger().warning("[Crypto] Flux de prix silencieux, reconnexion.");
+                scheduleReconnect(ws);
+                ws.abort();
+            }
+            watchdog();
+        }, CompletableFuture.delayedExecutor(Math.max(1, silenceMs / 3), TimeUnit.MILLISECONDS, executor));
+    }
+
+    private final class Listener implements WebSocket.Listener {
+        private final StringBuilder buffer = new StringBuilder();
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            socket = webSocket;
+            lastMessageAt = System.currentTimeMillis();
+            Bukkit.getLogger().info("[Crypto] Flux de prix connecté (" + uri.getHost() + ").");
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            buffer.append(data);
+            if (last) {
+                lastMessageAt = System.currentTimeMillis();
+                messages.incrementAndGet();
+                synchronized (PriceStream.this) { failures = 0; }
+                try {
+                    decode(buffer, lastMessageAt);
+                } catch (RuntimeException e) {
+                    Bukkit.getLogger().warning("[Crypto] Message du flux de prix illisible : " + e.getMessage());
+                }
+                buffer.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            scheduleReconnect(webSocket);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            Bukkit.getLogger().warning("[Crypto] Flux de prix interrompu : " + error.getMessage());
+            scheduleReconnect(webSocket);
+        }
+    }
+
+    /**
+     * Parcourt un message (objet ou tableau d'objets plats) et transmet chaque couple ("s", "c")
+     * dont la paire est suivie. Clés et paires sont comparées en place ; seul le prix d'une paire
+     * retenue est converti.
+     */
+    void decode(CharSequence msg, long ts) {
+        PairFilter filter = pairs;
+        String symbol = null;
+        int priceStart = -1, priceEnd = -1;
+        int keyStart = -1, keyEnd = -1;
+        int i = 0, n = msg.length();
+        while (i < n) {
+            char c = msg.charAt(i);
+            if (c == '{') {
+                symbol = null;
+                priceStart = -1;
+                keyStart = -1;
+                i++;
+            } else if (c == '}') {
+                if (symbol != null && priceStart >= 0) {
+                    double price = parsePrice(msg, priceStart, priceEnd);
+                    if (!Double.isNaN(price)) sink.accept(symbol, price, ts);
+                }
+                symbol = null;
+                priceStart = -1;
+                keyStart = -1;
+                i++;
+            } else if (c == '"') {
+                int end = i + 1;
+                while (end < n && msg.charAt(end) != '"') end += msg.charAt(end) == '\\' ? 2 : 1;
+                end = Math.min(end, n);
+                if (keyStart < 0) {
+                    keyStart = i + 1;
+                    keyEnd = end;
+                } else {
+                    if (isKey(msg, keyStart, keyEnd, 's')) {
+                        symbol = filter.match(msg, i + 1, end);
+                    } else if (isKey(msg, keyStart, keyEnd, 'c')) {
+                        priceStart = i + 1;
+                        priceEnd = end;
+                    }
+                    keyStart = -1;
+                }
+                i = end + 1;
+            } else if (keyStart >= 0 && (c == '-' || (c >= '0' && c <= '9'))) {
+                int end = i;
+                while (end < n && "0123456789+-.eE".indexOf(msg.charAt(end)) >= 0) end++;
+                if (isKey(msg, keyStart, keyEnd, 'c')) {
+                    priceStart = i;
+                    priceEnd = end;
+                }
+                keyStart = -1;
+                i = end;
+            } else if (keyStart >= 0 && (c == 't' || c == 'f' || c == 'n' || c == '[')) {
+                // Valeur non utilisée (booléen, null, tableau) : on l'ignore
+                keyStart = -1;
+                i++;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private static boolean isKey(CharSequence msg, int start, int end, char key) {
+        return end - start == 1 && msg.charAt(start) == key;
+    }
+
+    private static double parsePrice(CharSequence msg, int start, int end) {
+        try {
+            return Double.parseDouble(msg.subSequence(start, end).toString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Paires suivies (ex. "BTCUSDT" -> "btc") dans une table à adressage ouvert, interrogée sur une portion
+     * du message avec le même hachage que String.hashCode, sans extraire de sous-chaîne.
+     */
+    private static final class PairFilter {
+        static final PairFilter EMPTY = new PairFilter(List.of(), "");
+
+        private final String[] pairs;
+        private final String[] symbols;
+        private final int[] slots; // indice + 1, 0 = libre
+        private final int mask;
+        private final int size;
+
+        PairFilter(Collection<String> watched, String quote) {
+            pairs = new String[watched.size()];
+            symbols = new String[watched.size()];
+            int capacity = Integer.highestOneBit(Math.max(4, watched.size() * 2 - 1)) << 1;
+            slots = new int[capacity];
+            mask = capacity - 1;
+            int k = 0;
+            for (String symbol : watched) {
+                String pair = symbol.toUpperCase(Locale.ROOT) + quote;
+                int slot = spread(pair.hashCode()) & mask;
+                boolean duplicate = false;
+                while (slots[slot] != 0) {
+                    if (pairs[slots[slot] - 1].equals(pair)) {
+                        duplicate = true;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (duplicate) continue;
+                pairs[k] = pair;
+                symbols[k] = symbol;
+                slots[slot] = ++k;
+            }
+            size = k;
+        }
+
+        int size() { return size; }
+
+        /** Symbole suivi dont la paire est msg[from, to), ou null. */
+        String match(CharSequence msg, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) h = 31 * h + msg.charAt(i);
+            int len = to - from;
+            for (int slot = spread(h) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                String pair = pairs[slots[slot] - 1];
+                if (pair.length() != len) continue;
+                int i = 0;
+                while (i < len && pair.charAt(i) == msg.charAt(from + i)) i++;
+                if (i == len) return symbols[slots[slot] - 1];
+            }
+            return null;
+        }
+
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+    }
+
+    public boolean isConnected() { return socket != null; }
+
+    public long getMessageCount() { return messages.get(); }
+
+    public long getReconnectCount() { return reconnects.get(); }
+
+    public void close() {
+        closed = true;
+        WebSocket ws = socket;
+        socket = null;
+        // Sans réponse du serveur à la trame de fermeture, HttpClient.close() bloquerait : on coupe après l'envoi
+        if (ws != null) {
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, "arrêt")
+                    .orTimeout(1, TimeUnit.SECONDS)
+                    .whenComplete((r, ex) -> ws.abort());
+        }
+        client.shutdown();
+    }
+}
@@ -0,0 +1,13 @@
+package fr.jachou.cryptocurrency.services;
+
+/**
+ * Changement de prix d'un symbole dans le cache.
+ * oldPrice vaut NaN pour le premier prix connu ; symbol est le nom interné (minuscules).
+ */
+public record PriceTick(int symbolId, String symbol, double oldPrice, double newPrice, long ts) {
+
+    /** Variation relative (0.01 = +1 %), NaN si pas de prix précédent. */
+    public double changeRatio() {
+        return oldPrice > 0 ? newPrice / oldPrice - 1.0 : Double.NaN;
+    }
+}
@@ -4,38 +4,329 @@ import fr.jachou.cryptocurrency.Cryptocurrency;
 import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.io.File;
+import java.io.IOException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.stream.Collectors;
 
 /**
- * Collecte périodiquement les prix et maintient des séries temporelles en mémoire.
+ * Collecte périodiquement les prix et maintient des séries temporelles en mémoire
+ * (un {@link PriceRing} de taille fixe par symbole : ajout en O(1), lectures sans verrou).
+ * Chaque échantillon met aussi à jour des bougies OHLC 1m/15m/1h/1d ({@link CandleRing}) :
+ * les lectures sur une plage (m15, h1, h6, d1...) partent de la résolution adaptée au lieu des points bruts.
+ * Des statistiques glissantes ({@link RollingStats}) sont tenues à jour pour les fenêtres m15/h1/h6/d1,
+ * ainsi que les indicateurs techniques configurés ({@link Indicator}).
+ * Si un {@link SeriesStore} est ouvert, chaque échantillon y est aussi écrit ; il sert à relire l'historique
+ * au démarrage et aux lectures de points bruts qui dépassent la mémoire.
  * Ne fait jamais d'appel réseau sur le main thread.
  */
 public class PriceTimeseriesService {
 
     public static record PricePoint(long ts, double price) {}
 
+    public static record Candle(long start, double open, double high, double low, double close) {}
+
     private final Cryptocurrency plugin;
     private final PriceService priceService;
 
-    private final Map<String, Deque<PricePoint>> timeSeries = new ConcurrentHashMap<>();
+    private final Map<String, PriceRing> timeSeries = new ConcurrentHashMap<>();
+    private final Map<String, CandleRing[]> rollups = new ConcurrentHashMap<>();
+    private final Map<String, RollingStats[]> windows = new ConcurrentHashMap<>();
+    private final Map<String, Indicator[]> indicators = new ConcurrentHashMap<>();
+    private volatile List<String> indicatorSpecs = List.of();
+
+    // Résolutions des bougies (ms) et nombre de bougies gardées : 1 jour de 1m, 7 jours de 15m, 30 jours de 1h, 1 an de 1d
+    private static final long[] ROLLUP_MS = {60_000L, 900_000L, 3_600_000L, 86_400_000L};
+    private static final int[] ROLLUP_CAPACITY = {1440, 672, 720, 365};
+
+    // Fenêtres des statistiques glissantes
+    private static final String[] STATS_RANGES = {"m15", "h1", "h6", "d1"};
+
+    // Attente maximale d'un jeton du limiteur pour chaque appel d'historique
+    private static final long ACQUIRE_TIMEOUT_MS = 60_000;
+
+    // Tolérance du test de couverture avant backfill : la plus ancienne bougie est arrondie à sa résolution
+    // et l'historique du jour courant n'est pas encore complet
+    private static final long COVERAGE_SLACK_MS = 3_600_000L;
+
+    // Nombre de points utilisés pour la volatilité réalisée (TTL adaptatif du cache)
+    private static final int VOLATILITY_POINTS = 30;
 
     private int retentionPoints = 360;
     private int sampleSeconds = 60;
 
     private BukkitTask samplerTask;
+    private volatile SeriesStore store;
 
     public PriceTimeseriesService(Cryptocurrency plugin, PriceService priceService) {
         this.plugin = plugin;
         this.priceService = priceService;
     }
 
-    public void configure(int retentionPoints, int sampleSeconds) {
-        this.retentionPoints = Math.max(12, retentionPoints);
+    public synchronized void configure(int retentionPoints, int sampleSeconds) {
+        int retention = Math.max(12, retentionPoints);
         this.sampleSeconds = Math.max(5, sampleSeconds);
+        if (retention != this.retentionPoints) {
+            // Les séries existantes gardent leurs points les plus récents
+            timeSeries.replaceAll((sym, ring) -> ring.resized(retention));
+        }
+        this.retentionPoints = retention;
+    }
+
+    /**
+     * Indicateurs calculés pour chaque symbole (ex : "sma20", "ema12", "rsi14", "bb20"). Les specs inconnues
+     * sont ignorées ; en cas de changement, les indicateurs sont recalculés depuis les points en mémoire.
+     */
+    public synchronized void configureIndicators(List<String> specs) {
+        List<String> valid = new ArrayList<>();
+        for (String spec : specs) {
+            Indicator ind = Indicator.parse(spec);
+            if (ind == null) Bukkit.getLogger().warning("[Crypto] Indicateur inconnu ignoré : " + spec);
+            else if (!valid.contains(ind.name())) valid.add(ind.name());
+        }
+        if (valid.equals(indicatorSpecs)) return;
+        indicatorSpecs = List.copyOf(valid);
+        for (Map.Entry<String, PriceRing> e : timeSeries.entrySet()) {
+            PriceRing ring = e.getValue();
+            long[] ts = new long[ring.capacity()];
+            double[] prices = new double[ring.capacity()];
+            int n = ring.copyLast(ring.capacity(), ts, prices);
+            Indicator[] fresh = newIndicators();
+            for (int i = 0; i < n; i++) {
+                for (Indicator ind : fresh) ind.add(prices[i]);
+            }
+            indicators.put(e.getKey(), fresh);
+        }
+    }
+
+    private Indicator[] newIndicators() {
+        return newIndicators(indicatorSpecs);
+    }
+
+    private static Indicator[] newIndicators(List<String> specs) {
+        Indicator[] out = new Indicator[specs.size()];
+        for (int i = 0; i < out.length; i++) out[i] = Indicator.parse(specs.get(i));
+        return out;
+    }
+
+    /** Indicateur du symbole par nom (ex : "rsi14"), null s'il n'est pas configuré ou sans données. */
+    public Indicator getIndicator(String symbol, String name) {
+        Indicator[] list = indicators.get(symbol.toUpperCase(Locale.ROOT));
+        if (list == null) return null;
+        for (Indicator ind : list) {
+            if (ind.name().equalsIgnoreCase(name)) return ind;
+        }
+        return null;
+    }
+
+    /** Indicateurs du symbole, dans l'ordre de la configuration. */
+    public List<Indicator> getIndicators(String symbol) {
+        Indicator[] list = indicators.get(symbol.toUpperCase(Locale.ROOT));
+        return list == null ? Collections.emptyList() : List.of(list);
+    }
+
+    /**
+     * Ouvre l'historique sur disque et recharge en mémoire les points encore retenus (séries et bougies).
+     * @return le nombre de points relus, -1 si le stockage est indisponible
+     */
+    public synchronized int openStore(File dir, int retentionDays) {
+        SeriesStore opened = new SeriesStore(dir, Math.max(1, retentionDays) * 86_400_000L);
+        try {
+            opened.open();
+        } catch (IOException e) {
+            Bukkit.getLogger().warning("[Crypto] Historique des prix indisponible : " + e.getMessage());
+            return -1;
+        }
+        // Au-delà d'un an, aucune bougie ne peut encore accueillir les points
+        long from = System.currentTimeMillis() - ROLLUP_MS[ROLLUP_MS.length - 1] * ROLLUP_CAPACITY[ROLLUP_CAPACITY.length - 1];
+        int loaded = 0;
+        for (String sym : opened.symbols()) {
+            loaded += opened.read(sym, from, Long.MAX_VALUE, (ts, price) -> ingest(sym, ts, price));
+        }
+        store = opened;
+        return loaded;
+    }
+
+    /**
+     * Récupère en arrière-plan l'historique des symboles dont les derniers jours ne sont pas encore couverts,
+     * un symbole à la fois, avec un jeton de la voie sampler du limiteur par appel. L'historique est fusionné
+     * aux séries sans doublon (voir {@link #merge}).
+     * @return le nombre total de points ajoutés
+     */
+    public CompletableFuture<Integer> backfill(List<String> symbols, int days) {
+        PriceSource source = priceService.getSource();
+        if (days <= 0 || !source.supportsHistory()) return CompletableFuture.completedFuture(0);
+        long span = days * 86_400_000L;
+        long covered = System.currentTimeMillis() - span + COVERAGE_SLACK_MS;
+        CompletableFuture<Integer> chain = CompletableFuture.completedFuture(0);
+        for (String s : symbols) {
+            String sym = s.toUpperCase(Locale.ROOT);
+            if (oldestKnown(sym, span) <= covered) continue;
+            chain = chain.thenCompose(total -> acquire().thenCompose(v -> {
+                PointBuffer history = new PointBuffer();
+                return source.fetchHistoryUsd(sym.toLowerCase(Locale.ROOT), days, history::add)
+                        .thenApply(n -> total + merge(sym, history));
+            }).exceptionally(ex -> {
+                // Échec de l'appel ou aucun jeton à temps : on passe au symbole suivant
+                Bukkit.getLogger().warning("[Crypto] Historique indisponible pour " + sym + " : " + ex.getMessage());
+                return total;
+            }));
+        }
+        return chain;
+    }
+
+    /**
+     * Jeton de la voie sampler : l'historique passe après les trades et commandes.
+     * Échoue si aucun jeton n'est obtenu en ACQUIRE_TIMEOUT_MS.
+     */
+    private CompletableFuture<Void> acquire() {
+        return priceService.getRateLimiter().acquire(RateLimiter.Priority.SAMPLER, ACQUIRE_TIMEOUT_MS,
+                priceService.getAsyncExecutor());
+    }
+
+    /**
+     * Date de la plus ancienne bougie connue du symbole, lue dans la résolution la plus fine qui couvre spanMs
+     * (1m pour un jour, 15m pour une semaine...). Long.MAX_VALUE si le symbole n'a aucun point.
+     */
+    private long oldestKnown(String sym, long spanMs) {
+        CandleRing[] rings = rollups.get(sym);
+        if (rings == null) return Long.MAX_VALUE;
+        int i = 0;
+        while (i < rings.length - 1 && ROLLUP_MS[i] * ROLLUP_CAPACITY[i] < spanMs) i++;
+        return rings[i].oldestStart();
+    }
+
+    /**
+     * Fusionne un historique (trié) avec les points déjà connus du symbole : un point d'historique trop proche
+     * d'un point existant (moins d'un demi-intervalle d'échantillonnage) est écarté, les autres comblent les trous.
+     * Les points retenus sont d'abord insérés dans le stockage ({@link SeriesStore#insert}) ; si l'écriture
+     * échoue, rien n'est publié. Séries, bougies et statistiques sont ensuite reconstruites à partir du résultat.
+     * <p>
+     * La lecture du disque et la reconstruction se font hors verrou ; le verrou n'est pris que pour rattraper
+     * les échantillons reçus entre-temps et publier les nouvelles structures.
+     * @return le nombre de points d'historique ajoutés (écrits sur disque quand le stockage est ouvert)
+     */
+    private int merge(String sym, PointBuffer history) {
+        if (history.size == 0) return 0;
+        PointBuffer existing = new PointBuffer();
+        SeriesStore st = store;
+        if (st != null) {
+            st.read(sym, System.currentTimeMillis() - ROLLUP_MS[ROLLUP_MS.length - 1] * ROLLUP_CAPACITY[ROLLUP_CAPACITY.length - 1],
+                    Long.MAX_VALUE, existing::add);
+        } else {
+            PriceRing ring = timeSeries.get(sym);
+            if (ring != null) {
+                existing.ensure(ring.capacity());
+                existing.size = ring.copyLast(ring.capacity(), existing.ts, existing.prices);
+            }
+        }
+
+        long minGap = sampleSeconds * 500L;
+        PointBuffer merged = new PointBuffer();
+        merged.ensure(existing.size + history.size);
+        PointBuffer added = new PointBuffer();
+        int i = 0, j = 0;
+        while (i < existing.size || j < history.size) {
+            boolean fromHistory = i >= existing.size || (j < history.size && history.ts[j] < existing.ts[i]);
+            long ts;
+            double price;
+            if (fromHistory) {
+                ts = history.ts[j];
+                price = history.prices[j++];
+                long prevGap = i > 0 ? ts - existing.ts[i - 1] : Long.MAX_VALUE;
+                long nextGap = i < existing.size ? existing.ts[i] - ts : Long.MAX_VALUE;
+                if (Math.min(prevGap, nextGap) < minGap) continue;
+                // Historique non trié ou en double : ignoré
+                if (added.size > 0 && ts <= added.ts[added.size - 1]) continue;
+                added.add(ts, price);
+            } else {
+                ts = existing.ts[i];
+                price = existing.prices[i++];
+            }
+            merged.add(ts, price);
+        }
+        if (added.size == 0) return 0;
+        int kept = added.size;
+        if (st != null) {
+            try {
+                kept = st.insert(sym, added.ts, added.prices, added.size);
+            } catch (IOException e) {
+                Bukkit.getLogger().warning("[Crypto] Écriture de l'historique impossible pour " + sym + " : " + e.getMessage());
+                return 0;
+            }
+            if (kept == 0) return 0;
+        }
+
+        List<String> specs = indicatorSpecs;
+        PriceRing ring = new PriceRing(retentionPoints);
+        CandleRing[] candles = newRollups();
+        RollingStats[] stats = newWindows();
+        Indicator[] inds = newIndicators(specs);
+        for (int k = 0; k < merged.size; k++) {
+            long ts = merged.ts[k];
+            double price = merged.prices[k];
+            ring.add(ts, price);
+            for (CandleRing c : candles) c.add(ts, price);
+            for (RollingStats w : stats) w.add(ts, price);
+            for (Indicator ind : inds) ind.add(price);
+        }
+
+        synchronized (this) {
+            // Échantillons enregistrés pendant la reconstruction
+            int caughtUp = merged.size;
+            PriceRing current = timeSeries.get(sym);
+            if (current != null) {
+                long[] ts = new long[current.capacity()];
+                double[] prices = new double[current.capacity()];
+                int n = current.copyLast(current.capacity(), ts, prices);
+                for (int k = 0; k < n; k++) {
+                    if (ts[k] > merged.ts[merged.size - 1]) merged.add(ts[k], prices[k]);
+                }
+            }
+            for (int k = caughtUp; k < merged.size; k++) {
+                ring.add(merged.ts[k], merged.prices[k]);
+                for (CandleRing c : candles) c.add(merged.ts[k], merged.prices[k]);
+                for (RollingStats w : stats) w.add(merged.ts[k], merged.prices[k]);
+            }
+            // configure / configureIndicators appelés entre-temps
+            if (ring.capacity() != retentionPoints) ring = ring.resized(retentionPoints);
+            int indicatorsFrom = caughtUp;
+            if (!specs.equals(indicatorSpecs)) {
+                inds = newIndicators(indicatorSpecs);
+                indicatorsFrom = 0;
+            }
+            for (int k = indicatorsFrom; k < merged.size; k++) {
+                for (Indicator ind : inds) ind.add(merged.prices[k]);
+            }
+            timeSeries.put(sym, ring);
+            rollups.put(sym, candles);
+            windows.put(sym, stats);
+            indicators.put(sym, inds);
+        }
+        return kept;
+    }
+
+    /** Points (date, prix) accumulés dans des tableaux primitifs extensibles. */
+    private static final class PointBuffer {
+        long[] ts = new long[256];
+        double[] prices = new double[256];
+        int size;
+
+        void add(long t, double price) {
+            ensure(size + 1);
+            ts[size] = t;
+            prices[size++] = price;
+        }
+
+        void ensure(int capacity) {
+            if (capacity <= ts.length) return;
+            int next = Math.max(capacity, ts.length * 2);
+            ts = Arrays.copyOf(ts, next);
+            prices = Arrays.copyOf(prices, next);
+        }
     }
 
     public void startSampler(List<String> enabledSymbols) {
@@ -43,50 +334,279 @@ public class PriceTimeseriesService {
         List<String> symbols = enabledSymbols.stream().map(s -> s.toUpperCase(Locale.ROOT)).collect(Collectors.toList());
         samplerTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
             long now = System.currentTimeMillis();
-            for (String sym : symbols) {
-                try {
-                    priceService.getPriceUsd(sym).thenAccept(price -> {
-                        Deque<PricePoint> dq = timeSeries.computeIfAbsent(sym, k -> new ConcurrentLinkedDeque<>());
-                        dq.addLast(new PricePoint(now, price));
-                        // trim
-                        while (dq.size() > retentionPoints) dq.pollFirst();
-                    }).exceptionally(ex -> {
-                        // En cas d'échec, on peut quand même pousser la dernière valeur en cache si dispo
+            try {
+                // Un seul appel groupé pour tous les symboles suivis
+                priceService.getPricesUsd(symbols, RateLimiter.Priority.SAMPLER).thenAccept(prices -> {
+                    for (String sym : symbols) {
+                        Double price = prices.get(sym.toLowerCase(Locale.ROOT));
+                        if (price == null) continue;
+                        record(sym, now, price);
+                        priceService.updateVolatility(sym, realizedVariancePerMs(sym));
+                    }
+                }).exceptionally(ex -> {
+                    // En cas d'échec, on peut quand même pousser la dernière valeur en cache si dispo
+                    for (String sym : symbols) {
                         Double cached = priceService.getCachedUsd(sym);
-                        if (cached != null) {
-                            Deque<PricePoint> dq = timeSeries.computeIfAbsent(sym, k -> new ConcurrentLinkedDeque<>());
-                            dq.addLast(new PricePoint(now, cached));
-                            while (dq.size() > retentionPoints) dq.pollFirst();
-                        }
-                        return null;
-                    });
-                } catch (Throwable t) {
-                    // Ne rien faire, éviter de casser le scheduler
-                }
+                        if (cached != null) record(sym, now, cached);
+                    }
+                    return null;
+                });
+            } catch (Throwable t) {
+                // Ne rien faire, éviter de casser le scheduler
             }
         }, 20L, sampleSeconds * 20L);
     }
 
+    // Écrivain unique : les ajouts et redimensionnements sont sérialisés
+    private synchronized void record(String sym, long ts, double price) {
+        ingest(sym, ts, price);
+        SeriesStore st = store;
+        if (st == null) return;
+        try {
+            st.append(sym, ts, price);
+        } catch (IOException e) {
+            Bukkit.getLogger().warning("[Crypto] Écriture de l'historique impossible pour " + sym + " : " + e.getMessage());
+        }
+    }
+
+    private void ingest(String sym, long ts, double price) {
+        timeSeries.computeIfAbsent(sym, k -> new PriceRing(retentionPoints)).add(ts, price);
+        for (CandleRing ring : rollups.computeIfAbsent(sym, k -> newRollups())) ring.add(ts, price);
+        for (RollingStats w : windows.computeIfAbsent(sym, k -> newWindows())) w.add(ts, price);
+        for (Indicator ind : indicators.computeIfAbsent(sym, k -> newIndicators())) ind.add(price);
+    }
+
+    private static RollingStats[] newWindows() {
+        RollingStats[] w = new RollingStats[STATS_RANGES.length];
+        for (int i = 0; i < w.length; i++) w[i] = new RollingStats(parseRange(STATS_RANGES[i]));
+        return w;
+    }
+
+    private static CandleRing[] newRollups() {
+        CandleRing[] rings = new CandleRing[ROLLUP_MS.length];
+        for (int i = 0; i < rings.length; i++) rings[i] = new CandleRing(ROLLUP_MS[i], ROLLUP_CAPACITY[i]);
+        return rings;
+    }
+
+    /**
+     * Variance réalisée des log-rendements par milliseconde sur les derniers points : somme des carrés
+     * divisée par la durée couverte. Les points répétés (prix servi depuis le cache) ne faussent pas
+     * l'estimation : le mouvement accumulé apparaît dans le rendement suivant. NaN si trop peu de points.
+     */
+    double realizedVariancePerMs(String sym) {
+        long[] ts = new long[VOLATILITY_POINTS + 1];
+        double[] prices = new double[VOLATILITY_POINTS + 1];
+        int n = getSeries(sym, VOLATILITY_POINTS + 1, ts, prices);
+        if (n == 0) return Double.NaN;
+        double sumSq = 0.0;
+        int returns = 0;
+        long lastTs = ts[n - 1], firstTs = lastTs;
+        for (int i = n - 1; i > 0; i--) {
+            if (prices[i - 1] > 0 && prices[i] > 0) {
+                double r = Math.log(prices[i] / prices[i - 1]);
+                sumSq += r * r;
+                returns++;
+                firstTs = ts[i - 1];
+            }
+        }
+        long span = lastTs - firstTs;
+        return returns < 5 || span <= 0 ? Double.NaN : sumSq / span;
+    }
+
     public void stop() {
         if (samplerTask != null) samplerTask.cancel();
         samplerTask = null;
+        SeriesStore st = store;
+        if (st != null) st.flush();
     }
 
     /**
-     * Retourne une copie immuable de la série demandée, tronquée au nombre de points.
-     * range: m15|h1|h6|d1 (actuellement indicatif; l'échantillonnage est fixe, on prend juste N derniers points).
+     * Retourne une copie immuable de la série demandée : au plus points valeurs (clôtures) couvrant la plage.
+     * range: m15|h1|h6|d1|w1... ; une plage inconnue renvoie simplement les N derniers points bruts.
+     * Alloue un objet par point : pour un rendu fréquent, préférer {@link #read} avec une vue réutilisée.
      */
     public List<PricePoint> getSeries(String symbol, int points, String range) {
-        String sym = symbol.toUpperCase(Locale.ROOT);
-        Deque<PricePoint> dq = timeSeries.get(sym);
-        if (dq == null || dq.isEmpty()) return Collections.emptyList();
-        int n = Math.min(points, dq.size());
-        List<PricePoint> list = new ArrayList<>(n);
-        Iterator<PricePoint> it = dq.descendingIterator();
-        for (int i = 0; i < n && it.hasNext(); i++) list.add(it.next());
-        Collections.reverse(list);
+        SeriesView view = read(symbol, points, range, new SeriesView());
+        List<PricePoint> list = new ArrayList<>(view.size());
+        for (int i = 0; i < view.size(); i++) list.add(new PricePoint(view.ts(i), view.close(i)));
         return Collections.unmodifiableList(list);
     }
 
-    public Map<String, Deque<PricePoint>> getTimeSeries() { return timeSeries; }
+    /** Comme {@link #read}, sous forme de liste de bougies. */
+    public List<Candle> getCandles(String symbol, int points, String range) {
+        SeriesView view = read(symbol, points, range, new SeriesView());
+        List<Candle> list = new ArrayList<>(view.size());
+        for (int i = 0; i < view.size(); i++) list.add(new Candle(view.ts(i), view.open(i), view.high(i), view.low(i), view.close(i)));
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Découpe la plage en points intervalles égaux se terminant maintenant et remplit la vue avec une bougie
+     * par intervalle non vide (du plus ancien au plus récent). Les bougies sont construites depuis la plus
+     * grosse résolution précalculée qui tient dans un intervalle (les points bruts si l'intervalle fait moins
+     * d'une minute) : d1 sur 24 points lit 24 bougies 1h. Une plage inconnue donne les N derniers points bruts.
+     * <p>
+     * La vue est vidée puis remplie ; ses tableaux sont réutilisés d'un appel à l'autre.
+     * @return view
+     */
+    public SeriesView read(String symbol, int points, String range, SeriesView view) {
+        view.clear();
+        String sym = symbol.toUpperCase(Locale.ROOT);
+        if (points <= 0) return view;
+        long rangeMs = parseRange(range);
+        if (rangeMs <= 0) return lastRaw(sym, points, view);
+
+        long bucketMs = Math.max(1, rangeMs / points);
+        long windowStart = System.currentTimeMillis() - rangeMs;
+        CandleRing[] rings = rollups.get(sym);
+        CandleRing source = null;
+        for (int i = ROLLUP_MS.length - 1; i >= 0 && rings != null; i--) {
+            if (ROLLUP_MS[i] <= bucketMs) {
+                source = rings[i];
+                break;
+            }
+        }
+
+        Buckets buckets = new Buckets(windowStart, bucketMs, points, view);
+        if (source != null) {
+            long resolution = source.resolutionMs();
+            int wanted = (int) Math.min(source.capacity(), rangeMs / resolution + 1);
+            view.ensureScratch(wanted);
+            int n = source.copyLast(wanted, view.scratchStart, view.scratchOpen, view.scratchHigh, view.scratchLow, view.scratchClose);
+            for (int i = 0; i < n; i++) {
+                if (view.scratchStart[i] + resolution >= windowStart) {
+                    buckets.add(view.scratchStart[i], view.scratchOpen[i], view.scratchHigh[i], view.scratchLow[i], view.scratchClose[i]);
+                }
+            }
+            buckets.finish();
+            return view;
+        }
+        SeriesStore st = store;
+        if (st != null) {
+            // Points bruts lus directement dans les segments projetés
+            st.read(sym, windowStart, Long.MAX_VALUE, (ts, price) -> buckets.add(ts, price, price, price, price));
+            buckets.finish();
+            return view;
+        }
+        PriceRing ring = timeSeries.get(sym);
+        if (ring == null) return view;
+        int wanted = (int) Math.min(ring.capacity(), rangeMs / (sampleSeconds * 1000L) + 1);
+        view.ensureScratch(wanted);
+        int n = ring.copyLast(wanted, view.scratchStart, view.scratchClose);
+        for (int i = 0; i < n; i++) {
+            double price = view.scratchClose[i];
+            if (view.scratchStart[i] >= windowStart) buckets.add(view.scratchStart[i], price, price, price, price);
+        }
+        buckets.finish();
+        return view;
+    }
+
+    /** Regroupe des bougies (ou points) croissantes en points intervalles égaux à partir de windowStart. */
+    private static final class Buckets {
+        private final long windowStart;
+        private final long bucketMs;
+        private final int points;
+        private final SeriesView out;
+        private int bucket = -1;
+        private double o, h, l, c;
+
+        Buckets(long windowStart, long bucketMs, int points, SeriesView out) {
+            this.windowStart = windowStart;
+            this.bucketMs = bucketMs;
+            this.points = points;
+            this.out = out;
+        }
+
+        void add(long start, double open, double high, double low, double close) {
+            int idx = (int) Math.max(0, Math.min(points - 1, (start - windowStart) / bucketMs));
+            if (idx != bucket) {
+                finish();
+                bucket = idx;
+                o = open;
+                h = high;
+                l = low;
+            } else {
+                h = Math.max(h, high);
+                l = Math.min(l, low);
+            }
+            c = close;
+        }
+
+        void finish() {
+            if (bucket >= 0) out.append(windowStart + bucket * bucketMs, o, h, l, c);
+            bucket = -1;
+        }
+    }
+
+    /**
+     * Statistiques glissantes (min, max, moyenne, écart-type, variation...) du symbole sur la plage,
+     * lues sans copie. null si la plage n'est pas suivie (m15, h1, h6, d1) ou si la série est vide.
+     */
+    public RollingStats.Snapshot getStats(String symbol, String range) {
+        RollingStats[] w = windows.get(symbol.toUpperCase(Locale.ROOT));
+        if (w == null) return null;
+        for (int i = 0; i < STATS_RANGES.length; i++) {
+            if (STATS_RANGES[i].equalsIgnoreCase(range)) return w[i].snapshot();
+        }
+        return null;
+    }
+
+    /**
+     * Variation en % sur la plage : lue dans les statistiques glissantes quand la plage est suivie,
+     * sinon calculée sur 24 bougies au plus. NaN si la série est vide.
+     */
+    public double getChangePct(String symbol, String range) {
+        for (String tracked : STATS_RANGES) {
+            if (tracked.equalsIgnoreCase(range)) {
+                RollingStats.Snapshot st = getStats(symbol, range);
+                return st == null ? Double.NaN : st.changePct();
+            }
+        }
+        SeriesView view = read(symbol, 24, range, new SeriesView());
+        if (view.isEmpty()) return Double.NaN;
+        double first = view.open(0);
+        if (first == 0.0) return Double.NaN;
+        return (view.close(view.size() - 1) - first) / first * 100.0;
+    }
+
+    private SeriesView lastRaw(String sym, int points, SeriesView view) {
+        PriceRing ring = timeSeries.get(sym);
+        if (ring == null) return view;
+        int cap = Math.min(points, ring.capacity());
+        view.ensureScratch(cap);
+        int n = ring.copyLast(cap, view.scratchStart, view.scratchClose);
+        for (int i = 0; i < n; i++) {
+            double price = view.scratchClose[i];
+            view.append(view.scratchStart[i], price, price, price, price);
+        }
+        return view;
+    }
+
+    /** Durée d'une plage "m15", "h1", "d1", "w1"... en ms, 0 si le format est inconnu. */
+    static long parseRange(String range) {
+        if (range == null || range.length() < 2) return 0;
+        long unit = switch (Character.toLowerCase(range.charAt(0))) {
+            case 'm' -> 60_000L;
+            case 'h' -> 3_600_000L;
+            case 'd' -> 86_400_000L;
+            case 'w' -> 7 * 86_400_000L;
+            default -> 0L;
+        };
+        try {
+            return unit * Math.max(0, Integer.parseInt(range.substring(1)));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Copie les derniers points de la série (du plus ancien au plus récent) dans ts/prices, sans allocation.
+     * @return le nombre de points copiés (au plus points et la taille des tableaux), 0 si la série est inconnue
+     */
+    public int getSeries(String symbol, int points, long[] ts, double[] prices) {
+        PriceRing ring = timeSeries.get(symbol.toUpperCase(Locale.ROOT));
+        return ring == null || points <= 0 ? 0 : ring.copyLast(points, ts, prices);
+    }
+
+    public Map<String, PriceRing> getTimeSeries() { return timeSeries; }
 }
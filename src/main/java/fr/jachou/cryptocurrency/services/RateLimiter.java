@@ -0,0 +1,105 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token bucket devant la source de prix, avec des voies de priorité.
+ * Chaque priorité ne peut puiser que jusqu'à un plancher qui lui est réservé :
+ * les trades peuvent vider le seau, les placeholders/GUI s'arrêtent bien avant,
+ * ce qui garde toujours du budget pour les requêtes importantes.
+ */
+public class RateLimiter {
+
+    public enum Priority {
+        TRADE(0.0), COMMAND(0.1), SAMPLER(0.25), PLACEHOLDER(0.4);
+
+        // Part du seau que cette priorité ne peut pas consommer
+        private final double reserve;
+
+        Priority(double reserve) { this.reserve = reserve; }
+    }
+
+    private boolean enabled = true;
+    private double capacity = 10;
+    private double refillPerMs = 25 / 60_000.0;
+    private double tokens = capacity;
+    private long lastRefill = System.currentTimeMillis();
+
+    private final AtomicLongArray granted = new AtomicLongArray(Priority.values().length);
+    private final AtomicLongArray denied = new AtomicLongArray(Priority.values().length);
+
+    public synchronized void configure(boolean enabled, int requestsPerMinute, int burst) {
+        this.enabled = enabled;
+        this.capacity = Math.max(1, burst);
+        this.refillPerMs = Math.max(1, requestsPerMinute) / 60_000.0;
+        this.tokens = Math.min(tokens, capacity);
+    }
+
+    /** Consomme un jeton si le niveau du seau reste au-dessus du plancher de la priorité. */
+    public synchronized boolean tryAcquire(Priority priority) {
+        if (!enabled) {
+            granted.incrementAndGet(priority.ordinal());
+            return true;
+        }
+        refill();
+        if (tokens - 1.0 >= floor(priority)) {
+            tokens -= 1.0;
+            granted.incrementAndGet(priority.ordinal());
+            return true;
+        }
+        denied.incrementAndGet(priority.ordinal());
+        return false;
+    }
+
+    /** Délai estimé (ms) avant qu'un jeton soit disponible pour cette priorité. */
+    public synchronized long millisUntilAvailable(Priority priority) {
+        if (!enabled) return 0L;
+        refill();
+        double missing = floor(priority) + 1.0 - tokens;
+        return missing <= 0 ? 0L : (long) Math.ceil(missing / refillPerMs);
+    }
+
+    /**
+     * Attend un jeton sans bloquer de thread, en réessayant au délai estimé par {@link #millisUntilAvailable}.
+     * Échoue avec une {@link TimeoutException} si aucun jeton n'est obtenu en moins de timeoutMs.
+     */
+    public CompletableFuture<Void> acquire(Priority priority, long timeoutMs, Executor executor) {
+        return acquireBefore(priority, System.currentTimeMillis() + timeoutMs, executor);
+    }
+
+    private CompletableFuture<Void> acquireBefore(Priority priority, long deadline, Executor executor) {
+        if (tryAcquire(priority)) return CompletableFuture.completedFuture(null);
+        long left = deadline - System.currentTimeMillis();
+        if (left <= 0) return CompletableFuture.failedFuture(new TimeoutException("aucun jeton disponible pour " + priority));
+        long waitMs = Math.min(left, Math.max(250L, millisUntilAvailable(priority)));
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(waitMs, TimeUnit.MILLISECONDS, executor))
+                .thenCompose(v -> acquireBefore(priority, deadline, executor));
+    }
+
+    /**
+     * Niveau sous lequel cette priorité ne puise pas. Borné à capacity - 1 : avec un petit seau,
+     * chaque voie peut au moins prendre un jeton quand le seau est plein.
+     */
+    private double floor(Priority priority) {
+        return Math.min(capacity * priority.reserve, capacity - 1.0);
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerMs);
+        lastRefill = now;
+    }
+
+    public synchronized double getAvailableTokens() {
+        refill();
+        return tokens;
+    }
+
+    public long getGranted(Priority priority) { return granted.get(priority.ordinal()); }
+
+    public long getDenied(Priority priority) { return denied.get(priority.ordinal()); }
+}
@@ -0,0 +1,144 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.bukkit.Bukkit;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Source hors-ligne qui rejoue des ticks enregistrés, sans aucun appel réseau.
+ * Fichier CSV "timestamp_ms,symbole,prix" (lignes vides et # ignorées).
+ * <ul>
+ *     <li>speed = 0 : chaque appel à fetchUsd avance d'un tick par symbole, quelles que soient les dates
+ *     enregistrées, ce qui permet de tester toute la chaîne à des centaines de ticks par seconde ;</li>
+ *     <li>speed &gt; 0 : l'enregistrement défile en temps réel multiplié par speed à partir du premier appel,
+ *     et chaque symbole renvoie son dernier tick dont la date est atteinte.</li>
+ * </ul>
+ */
+public class ReplayPriceSource implements PriceSource {
+
+    private final Map<String, long[]> times = new HashMap<>();
+    private final Map<String, double[]> ticks = new HashMap<>();
+    private final Map<String, AtomicInteger> cursors = new ConcurrentHashMap<>();
+    private final boolean loop;
+    private final double speed;
+    private final LongSupplier clock;
+    private final boolean loaded;
+    private long firstTs = Long.MAX_VALUE, lastTs = Long.MIN_VALUE;
+    private volatile long startedAt = -1;
+
+    public ReplayPriceSource(File file, boolean loop, double speed) {
+        this(file, loop, speed, System::currentTimeMillis);
+    }
+
+    /** Horloge injectable pour les tests. */
+    ReplayPriceSource(File file, boolean loop, double speed, LongSupplier clock) {
+        this.loop = loop;
+        this.speed = Math.max(0.0, speed);
+        this.clock = clock;
+        this.loaded = load(file);
+    }
+
+    private boolean load(File file) {
+        Map<String, List<double[]>> bySymbol = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split(",");
+                if (parts.length < 3) continue;
+                try {
+                    long ts = Long.parseLong(parts[0].trim());
+                    double price = Double.parseDouble(parts[2].trim());
+                    bySymbol.computeIfAbsent(parts[1].trim().toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(new double[]{ts, price});
+                    firstTs = Math.min(firstTs, ts);
+                    lastTs = Math.max(lastTs, ts);
+                } catch (NumberFormatException ignored) {
+                    // en-tête ou ligne invalide
+                }
+            }
+        } catch (IOException e) {
+            Bukkit.getLogger().warning("[Crypto] Fichier de replay illisible (" + file + ") : " + e.getMessage());
+            return false;
+        }
+        for (Map.Entry<String, List<double[]>> e : bySymbol.entrySet()) {
+            List<double[]> rows = e.getValue();
+            // Tri stable par date : l'ordre du fichier départage les ticks de même date
+            rows.sort(Comparator.comparingDouble(row -> row[0]));
+            long[] ts = new long[rows.size()];
+            double[] prices = new double[rows.size()];
+            for (int i = 0; i < ts.length; i++) {
+                ts[i] = (long) rows.get(i)[0];
+                prices[i] = rows.get(i)[1];
+            }
+            times.put(e.getKey(), ts);
+            ticks.put(e.getKey(), prices);
+        }
+        return true;
+    }
+
+    @Override
+    public String getName() { return "replay"; }
+
+    @Override
+    public String resolveId(String symbol) { return symbol.toLowerCase(Locale.ROOT); }
+
+    @Override
+    public CompletableFuture<Map<String, Double>> fetchUsd(List<String> symbols) {
+        Map<String, Double> prices = new HashMap<>();
+        long position = speed > 0 ? position() : 0L;
+        for (String sym : symbols) {
+            double[] series = ticks.get(sym);
+            if (series == null || series.length == 0) continue;
+            if (speed > 0) {
+                int i = Arrays.binarySearch(times.get(sym), position);
+                // Dernier tick atteint (ou le premier tant que le symbole n'a pas encore commencé)
+                if (i < 0) i = Math.max(0, -i - 2);
+                else while (i + 1 < series.length && times.get(sym)[i + 1] == position) i++;
+                prices.put(sym, series[i]);
+                continue;
+            }
+            int i = cursors.computeIfAbsent(sym, k -> new AtomicInteger()).getAndIncrement();
+            prices.put(sym, series[loop ? i % series.length : Math.min(i, series.length - 1)]);
+        }
+        return CompletableFuture.completedFuture(prices);
+    }
+
+    /** Date enregistrée atteinte : temps écoulé depuis le premier appel multiplié par speed, bouclé au besoin. */
+    private long position() {
+        long now = clock.getAsLong();
+        if (startedAt < 0) {
+            synchronized (this) {
+                if (startedAt < 0) startedAt = now;
+            }
+        }
+        long elapsed = (long) ((now - startedAt) * speed);
+        long span = lastTs - firstTs;
+        if (span <= 0) return firstTs;
+        if (loop) return firstTs + elapsed % (span + 1);
+        return firstTs + Math.min(elapsed, span);
+    }
+
+    @Override
+    public Health getHealth() {
+        return loaded ? Health.UP : Health.DOWN;
+    }
+
+    @Override
+    public int getMaxBatchSize() { return Integer.MAX_VALUE; }
+}
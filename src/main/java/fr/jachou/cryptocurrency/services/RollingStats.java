@@ -0,0 +1,125 @@
+package fr.jachou.cryptocurrency.services;
+
+/**
+ * Statistiques glissantes d'une série sur une fenêtre de temps (ex : 24 h), mises à jour en O(1) amorti
+ * à chaque échantillon : min/max par files monotones, premier/dernier, moyenne et écart-type par sommes
+ * courantes. Chaque ajout publie un {@link Snapshot} immuable : la lecture est un simple accès volatile.
+ * <p>
+ * Un seul écrivain ; la fenêtre se termine au dernier échantillon reçu.
+ */
+public class RollingStats {
+
+    public record Snapshot(int count, long firstTs, long lastTs, double first, double last,
+                           double min, double max, double mean, double stddev) {
+        /** Variation en % entre le premier et le dernier point de la fenêtre, NaN si indéfinie. */
+        public double changePct() {
+            return count < 1 || first == 0.0 ? Double.NaN : (last - first) / first * 100.0;
+        }
+    }
+
+    // Recalcul exact des sommes à intervalle régulier, pour borner la dérive des soustractions
+    private static final int RESUM_EVERY = 4096;
+
+    private final long windowMs;
+    private int mask;
+    private long[] ts;
+    private double[] prices;
+    // Numéros de séquence des échantillons de la fenêtre : [head, tail)
+    private long head, tail;
+    // Files monotones de numéros de séquence (positions [xHead, xTail))
+    private long[] minQ, maxQ;
+    private long minHead, minTail, maxHead, maxTail;
+    // Sommes des écarts à shift (premier prix de la fenêtre lors du dernier recalcul)
+    private double shift, sum, sumSq;
+    private int sinceResum;
+    private volatile Snapshot snapshot;
+
+    public RollingStats(long windowMs) {
+        this.windowMs = windowMs;
+        allocate(64);
+    }
+
+    public long windowMs() { return windowMs; }
+
+    /** Dernières statistiques publiées, null si aucun échantillon. */
+    public Snapshot snapshot() { return snapshot; }
+
+    /** Intègre un échantillon ; ignoré s'il est plus ancien que le dernier. */
+    public void add(long t, double price) {
+        if (tail > head && t < ts[slot(tail - 1)]) return;
+        if (tail - head == ts.length) grow();
+        if (tail == head) {
+            shift = price;
+            sum = 0;
+            sumSq = 0;
+        }
+        long seq = tail++;
+        ts[slot(seq)] = t;
+        prices[slot(seq)] = price;
+        double d = price - shift;
+        sum += d;
+        sumSq += d * d;
+
+        while (maxTail > maxHead && prices[slot(maxQ[slot(maxTail - 1)])] <= price) maxTail--;
+        maxQ[slot(maxTail++)] = seq;
+        while (minTail > minHead && prices[slot(minQ[slot(minTail - 1)])] >= price) minTail--;
+        minQ[slot(minTail++)] = seq;
+
+        long limit = t - windowMs;
+        while (ts[slot(head)] < limit) {
+            double e = prices[slot(head)] - shift;
+            sum -= e;
+            sumSq -= e * e;
+            if (maxQ[slot(maxHead)] == head) maxHead++;
+            if (minQ[slot(minHead)] == head) minHead++;
+            head++;
+        }
+        if (++sinceResum >= RESUM_EVERY) resum();
+        publish();
+    }
+
+    private void publish() {
+        int n = (int) (tail - head);
+        double meanD = sum / n;
+        double variance = Math.max(0.0, sumSq / n - meanD * meanD);
+        snapshot = new Snapshot(n, ts[slot(head)], ts[slot(tail - 1)], prices[slot(head)], prices[slot(tail - 1)],
+                prices[slot(minQ[slot(minHead)])], prices[slot(maxQ[slot(maxHead)])],
+                shift + meanD, Math.sqrt(variance));
+    }
+
+    private void resum() {
+        sinceResum = 0;
+        shift = prices[slot(head)];
+        sum = 0;
+        sumSq = 0;
+        for (long s = head; s < tail; s++) {
+            double d = prices[slot(s)] - shift;
+            sum += d;
+            sumSq += d * d;
+        }
+    }
+
+    private int slot(long seq) { return (int) (seq & mask); }
+
+    private void allocate(int capacity) {
+        ts = new long[capacity];
+        prices = new double[capacity];
+        minQ = new long[capacity];
+        maxQ = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /** Double la capacité en replaçant échantillons et files à leurs nouveaux emplacements. */
+    private void grow() {
+        long[] oldTs = ts, oldMin = minQ, oldMax = maxQ;
+        double[] oldPrices = prices;
+        int oldMask = mask;
+        allocate(ts.length * 2);
+        for (long s = head; s < tail; s++) {
+            ts[slot(s)] = oldTs[(int) (s & oldMask)];
+            prices[slot(s)] = oldPrices[(int) (s & oldMask)];
+        }
+        for (long p = minHead; p < minTail; p++) minQ[slot(p)] = oldMin[(int) (p & oldMask)];
+        for (long p = maxHead; p < maxTail; p++) maxQ[slot(p)] = oldMax[(int) (p & oldMask)];
+    }
+}
@@ -0,0 +1,433 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Historique des prix sur disque : un dossier par symbole contenant des segments en ajout seul,
+ * projetés en mémoire (mmap). Un segment = en-tête de 16 octets puis des enregistrements fixes
+ * (date ms, prix) de 16 octets ; il est nommé d'après la date de son premier point.
+ * <p>
+ * Un nouveau segment est ouvert quand le courant est plein ou couvre plus d'un jour ; les segments
+ * entièrement plus vieux que la rétention sont supprimés. Les lectures parcourent directement
+ * les pages projetées, sans charger l'historique sur le tas.
+ * <p>
+ * Un seul écrivain (ajouts sérialisés) ; les lecteurs ne voient que les enregistrements publiés
+ * via le compteur volatile du segment. Une date à 0 marque la fin des données d'un segment.
+ * <p>
+ * Un segment scellé (remplacé par un plus récent) est réécrit compressé ({@link GorillaCodec}) dans un
+ * fichier ".gor" de même nom ; la lecture le décode alors en flux. L'historique récupéré après coup
+ * passe par {@link #insert}, qui réécrit les segments concernés.
+ */
+public class SeriesStore {
+
+    /** Reçoit les points lus (date ms, prix), sans boxing. */
+    @FunctionalInterface
+    public interface PointSink {
+        void accept(long ts, double price);
+    }
+
+    private static final int MAGIC = 0x43525453; // "CRTS"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 16;
+    private static final int SEGMENT_RECORDS = 4096;
+    private static final long SEGMENT_MS = 86_400_000L;
+    private static final String SUFFIX = ".seg";
+    private static final int PACKED_MAGIC = 0x43525447; // "CRTG"
+    private static final String PACKED_SUFFIX = ".gor";
+
+    private static final class Segment {
+        final File file;
+        final long firstTs;
+        final boolean packed;
+        volatile MappedByteBuffer buffer;
+        volatile int count = -1; // -1 : pas encore projeté
+
+        Segment(File file, long firstTs) {
+            this.file = file;
+            this.firstTs = firstTs;
+            this.packed = file.getName().endsWith(PACKED_SUFFIX);
+        }
+    }
+
+    private static long tsAt(ByteBuffer buf, int i) { return buf.getLong(HEADER_BYTES + i * RECORD_BYTES); }
+
+    private static double priceAt(ByteBuffer buf, int i) { return buf.getDouble(HEADER_BYTES + i * RECORD_BYTES + 8); }
+
+    /** Premier indice dont la date est >= ts. */
+    private static int lowerBound(ByteBuffer buf, long ts, int n) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tsAt(buf, mid) < ts) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static final class Series {
+        final File dir;
+        final List<Segment> segments = new CopyOnWriteArrayList<>();
+        long lastTs = Long.MIN_VALUE; // protégé par le verrou du store
+
+        Series(File dir) { this.dir = dir; }
+    }
+
+    private final File root;
+    private final long retentionMs;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    public SeriesStore(File root, long retentionMs) {
+        this.root = root;
+        this.retentionMs = Math.max(SEGMENT_MS, retentionMs);
+    }
+
+    /** Recense les segments existants ; le contenu n'est projeté qu'à la première lecture. */
+    public synchronized void open() throws IOException {
+        if (!root.isDirectory() && !root.mkdirs()) throw new IOException("dossier " + root + " inaccessible");
+        File[] dirs = root.listFiles(File::isDirectory);
+        if (dirs == null) return;
+        for (File dir : dirs) {
+            Series s = new Series(dir);
+            File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX) || name.endsWith(PACKED_SUFFIX));
+            if (files == null) continue;
+            // Nom sans extension -> fichier ; la version compressée l'emporte (arrêt pendant un scellement)
+            Map<Long, File> byStart = new TreeMap<>();
+            for (File f : files) {
+                String name = f.getName();
+                long firstTs;
+                try {
+                    firstTs = Long.parseLong(name.substring(0, name.lastIndexOf('.')));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                File other = byStart.get(firstTs);
+                if (other == null || name.endsWith(PACKED_SUFFIX)) {
+                    if (other != null) other.delete();
+                    byStart.put(firstTs, f);
+                } else {
+                    f.delete();
+                }
+            }
+            for (Map.Entry<Long, File> e : byStart.entrySet()) s.segments.add(new Segment(e.getValue(), e.getKey()));
+            if (s.segments.isEmpty()) continue;
+            Segment last = s.segments.get(s.segments.size() - 1);
+            try {
+                int n = map(last);
+                if (n > 0) s.lastTs = lastTs(last, n);
+            } catch (IOException e) {
+                // Segment courant illisible : mis de côté, les ajouts repartent dans un nouveau segment
+                Bukkit.getLogger().warning("[Crypto] Segment d'historique ignoré " + last.file.getName() + " : " + e.getMessage());
+                s.segments.remove(last);
+                if (s.segments.isEmpty()) continue;
+            }
+            // Segments bruts scellés (ancien format ou arrêt avant compression)
+            for (Segment seg : List.copyOf(s.segments)) {
+                if (!seg.packed && seg != s.segments.get(s.segments.size() - 1)) seal(s, seg);
+            }
+            series.put(dir.getName(), s);
+        }
+        purge(System.currentTimeMillis());
+    }
+
+    public List<String> symbols() {
+        return new ArrayList<>(series.keySet());
+    }
+
+    /** Ajoute un point ; ignoré s'il n'est pas plus récent que le dernier point du symbole. */
+    public synchronized void append(String symbol, long ts, double price) throws IOException {
+        if (ts <= 0) return;
+        Series s = seriesFor(symbol);
+        if (ts <= s.lastTs) return;
+        Segment seg = s.segments.isEmpty() ? null : s.segments.get(s.segments.size() - 1);
+        if (seg == null || seg.packed || map(seg) >= SEGMENT_RECORDS || ts - seg.firstTs >= SEGMENT_MS) {
+            Segment sealed = seg;
+            seg = create(s.dir, ts);
+            s.segments.add(seg);
+            if (sealed != null && !sealed.packed) seal(s, sealed);
+            purge(ts);
+        }
+        int i = seg.count;
+        int at = HEADER_BYTES + i * RECORD_BYTES;
+        // Le prix avant la date : une date non nulle signifie un enregistrement complet
+        seg.buffer.putDouble(at + 8, price);
+        seg.buffer.putLong(at, ts);
+        seg.count = i + 1;
+        s.lastTs = ts;
+    }
+
+    /**
+     * Insère des points triés par date croissante, y compris plus anciens que le dernier point du symbole
+     * (historique récupéré après coup). Chaque segment qui reçoit des points est réécrit compressé avec
+     * ses points existants ; les points antérieurs au premier segment forment de nouveaux segments d'au
+     * plus un jour. Une date déjà présente garde son point existant.
+     * @return le nombre de points réellement écrits
+     */
+    public synchronized int insert(String symbol, long[] ts, double[] prices, int n) throws IOException {
+        if (n <= 0) return 0;
+        Series s = seriesFor(symbol);
+        List<Segment> segs = List.copyOf(s.segments);
+        int written = 0;
+        int i = 0;
+        List<Segment> older = new ArrayList<>();
+        long first = segs.isEmpty() ? Long.MAX_VALUE : segs.get(0).firstTs;
+        while (i < n && ts[i] < first) {
+            int from = i;
+            while (i < n && ts[i] < first && ts[i] - ts[from] < SEGMENT_MS) i++;
+            older.add(writePacked(s.dir, ts[from], Arrays.copyOfRange(ts, from, i), Arrays.copyOfRange(prices, from, i), i - from));
+            written += i - from;
+        }
+        Segment[] rewritten = new Segment[segs.size()];
+        for (int k = 0; k < segs.size() && i < n; k++) {
+            long end = k + 1 < segs.size() ? segs.get(k + 1).firstTs : Long.MAX_VALUE;
+            if (ts[i] >= end) continue;
+            int from = i;
+            while (i < n && ts[i] < end) i++;
+            Segment seg = segs.get(k);
+            Block old = load(seg);
+            int m = old.ts().length;
+            long[] mts = new long[m + i - from];
+            double[] mprices = new double[mts.length];
+            int a = 0, b = from, c = 0;
+            while (a < m || b < i) {
+                if (b < i && (a >= m || ts[b] < old.ts()[a])) {
+                    mts[c] = ts[b];
+                    mprices[c++] = prices[b++];
+                } else {
+                    if (b < i && ts[b] == old.ts()[a]) b++;
+                    mts[c] = old.ts()[a];
+                    mprices[c++] = old.prices()[a++];
+                }
+            }
+            if (c == m) continue; // uniquement des dates déjà connues
+            written += c - m;
+            rewritten[k] = writePacked(s.dir, seg.firstTs, mts, mprices, c);
+        }
+        // Publication après écriture de tous les fichiers ; chaque remplacement est atomique pour les lecteurs
+        for (int k = 0; k < rewritten.length; k++) {
+            Segment old = segs.get(k);
+            if (rewritten[k] == null) continue;
+            int at = s.segments.indexOf(old);
+            if (at >= 0) s.segments.set(at, rewritten[k]);
+            // Un segment brut réécrit est fermé : le prochain ajout ouvre un nouveau segment
+            if (!old.packed && !old.file.delete()) old.file.deleteOnExit();
+        }
+        if (!older.isEmpty()) s.segments.addAll(0, older);
+        s.lastTs = Math.max(s.lastTs, ts[n - 1]);
+        return written;
+    }
+
+    /**
+     * Parcourt les points du symbole dont la date est dans [fromTs, toTs], du plus ancien au plus récent.
+     * @return le nombre de points transmis
+     */
+    public int read(String symbol, long fromTs, long toTs, PointSink sink) {
+        Series s = series.get(key(symbol));
+        if (s == null) return 0;
+        // Copie : purge et scellement modifient la liste pendant le parcours, les indices doivent rester stables
+        List<Segment> segs = List.copyOf(s.segments);
+        int sent = 0;
+        for (int k = 0; k < segs.size(); k++) {
+            Segment seg = segs.get(k);
+            if (seg.firstTs > toTs) break;
+            if (k + 1 < segs.size() && segs.get(k + 1).firstTs <= fromTs) continue;
+            int n;
+            try {
+                n = map(seg);
+            } catch (IOException e) {
+                Bukkit.getLogger().warning("[Crypto] Segment d'historique illisible " + seg.file.getName() + " : " + e.getMessage());
+                continue;
+            }
+            MappedByteBuffer buf = seg.buffer;
+            if (buf == null) continue; // segment purgé entre-temps
+            if (seg.packed) {
+                GorillaCodec.Decoder d = new GorillaCodec.Decoder(buf, HEADER_BYTES);
+                while (d.next()) {
+                    long ts = d.ts();
+                    if (ts < fromTs) continue;
+                    if (ts > toTs) return sent;
+                    sink.accept(ts, d.value());
+                    sent++;
+                }
+                continue;
+            }
+            for (int i = lowerBound(buf, fromTs, n); i < n; i++) {
+                long ts = tsAt(buf, i);
+                if (ts > toTs) return sent;
+                sink.accept(ts, priceAt(buf, i));
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    /** Supprime les segments dont le suivant commence avant la limite de rétention (donc entièrement expirés). */
+    public synchronized void purge(long now) {
+        long limit = now - retentionMs;
+        for (Series s : series.values()) {
+            while (s.segments.size() > 1 && s.segments.get(1).firstTs < limit) {
+                Segment old = s.segments.remove(0);
+                old.buffer = null;
+                // Sous Windows un fichier encore projeté ne peut pas être supprimé : il le sera au prochain démarrage
+                if (!old.file.delete()) old.file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Réécrit un segment brut scellé en version compressée puis supprime l'original. En cas d'échec,
+     * le segment brut reste utilisé tel quel.
+     */
+    private static void seal(Series s, Segment raw) {
+        try {
+            Block points = load(raw);
+            Segment packed = writePacked(raw.file.getParentFile(), raw.firstTs, points.ts(), points.prices(), points.ts().length);
+            int at = s.segments.indexOf(raw);
+            if (at >= 0) s.segments.set(at, packed);
+            // Les lecteurs en cours gardent la projection de l'ancien fichier jusqu'à la fin de leur parcours
+            if (!raw.file.delete()) raw.file.deleteOnExit();
+        } catch (IOException e) {
+            Bukkit.getLogger().warning("[Crypto] Compression du segment " + raw.file.getName() + " impossible : " + e.getMessage());
+        }
+    }
+
+    /** Points d'un segment, brut ou compressé. */
+    private record Block(long[] ts, double[] prices) {}
+
+    private static Block load(Segment seg) throws IOException {
+        int n = map(seg);
+        long[] ts = new long[n];
+        double[] prices = new double[n];
+        if (seg.packed) {
+            GorillaCodec.Decoder d = new GorillaCodec.Decoder(seg.buffer, HEADER_BYTES);
+            for (int i = 0; i < n && d.next(); i++) {
+                ts[i] = d.ts();
+                prices[i] = d.value();
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                ts[i] = tsAt(seg.buffer, i);
+                prices[i] = priceAt(seg.buffer, i);
+            }
+        }
+        return new Block(ts, prices);
+    }
+
+    /** Écrit un segment compressé (fichier temporaire puis renommage) et le projette. */
+    private static Segment writePacked(File dir, long firstTs, long[] ts, double[] prices, int n) throws IOException {
+        File packedFile = new File(dir, String.format(Locale.ROOT, "%013d%s", firstTs, PACKED_SUFFIX));
+        byte[] block = GorillaCodec.encode(ts, prices, n);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(PACKED_MAGIC).putShort(VERSION).putShort((short) 0).putInt(n).putInt(0).flip();
+        Path tmp = packedFile.toPath().resolveSibling(packedFile.getName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ch.write(header);
+            ch.write(ByteBuffer.wrap(block));
+            ch.force(true);
+        }
+        Files.move(tmp, packedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Segment packed = new Segment(packedFile, firstTs);
+        map(packed);
+        return packed;
+    }
+
+    private static long lastTs(Segment seg, int n) {
+        if (!seg.packed) return tsAt(seg.buffer, n - 1);
+        GorillaCodec.Decoder d = new GorillaCodec.Decoder(seg.buffer, HEADER_BYTES);
+        long ts = Long.MIN_VALUE;
+        while (d.next()) ts = d.ts();
+        return ts;
+    }
+
+    /** Force l'écriture des segments ouverts sur le disque. */
+    public synchronized void flush() {
+        for (Series s : series.values()) {
+            if (s.segments.isEmpty()) continue;
+            MappedByteBuffer buf = s.segments.get(s.segments.size() - 1).buffer;
+            if (buf != null) buf.force();
+        }
+    }
+
+    /** Projette le segment s'il ne l'est pas encore et renvoie son nombre d'enregistrements. */
+    private static int map(Segment seg) throws IOException {
+        int n = seg.count;
+        if (n >= 0) return n;
+        synchronized (seg) {
+            if (seg.count >= 0) return seg.count;
+            if (seg.packed) {
+                try (FileChannel ch = FileChannel.open(seg.file.toPath(), StandardOpenOption.READ)) {
+                    MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                    if (buf.capacity() < HEADER_BYTES + 4 || buf.getInt(0) != PACKED_MAGIC) throw new IOException("format inconnu");
+                    if (buf.getShort(4) != VERSION) throw new IOException("version " + buf.getShort(4) + " non supportée");
+                    seg.buffer = buf;
+                    seg.count = new GorillaCodec.Decoder(buf, HEADER_BYTES).count();
+                    return seg.count;
+                }
+            }
+            try (FileChannel ch = FileChannel.open(seg.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+                if (buf.capacity() < HEADER_BYTES || buf.getInt(0) != MAGIC) throw new IOException("format inconnu");
+                if (buf.getShort(4) != VERSION) throw new IOException("version " + buf.getShort(4) + " non supportée");
+                int capacity = Math.min(buf.getInt(8), (buf.capacity() - HEADER_BYTES) / RECORD_BYTES);
+                seg.buffer = buf;
+                // Les enregistrements valides précèdent les emplacements vides (date à 0)
+                int lo = 0, hi = capacity;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (tsAt(buf, mid) != 0) lo = mid + 1;
+                    else hi = mid;
+                }
+                seg.count = lo;
+                return lo;
+            }
+        }
+    }
+
+    private static Segment create(File dir, long firstTs) throws IOException {
+        File f = new File(dir, String.format(Locale.ROOT, "%013d%s", firstTs, SUFFIX));
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(SEGMENT_RECORDS).putInt(0).flip();
+            ch.write(header, 0);
+            // Fichier de taille fixe, rempli de zéros : les emplacements libres ont une date à 0
+            ch.write(ByteBuffer.allocate(1), HEADER_BYTES + (long) SEGMENT_RECORDS * RECORD_BYTES - 1);
+        }
+        Segment seg = new Segment(f, firstTs);
+        map(seg);
+        return seg;
+    }
+
+    private Series seriesFor(String symbol) throws IOException {
+        String key = key(symbol);
+        Series s = series.get(key);
+        if (s == null) {
+            File dir = new File(root, key);
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("dossier " + dir + " inaccessible");
+            s = new Series(dir);
+            series.put(key, s);
+        }
+        return s;
+    }
+
+    private static String key(String symbol) {
+        return symbol.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,72 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.util.Arrays;
+
+/**
+ * Résultat réutilisable d'une lecture de série ({@link PriceTimeseriesService#read}) : bougies
+ * (début, ouverture, haut, bas, clôture) dans des tableaux primitifs, plus les tableaux de travail de la lecture.
+ * Les tableaux ne grandissent que si besoin : relire dans la même vue ne fait aucune allocation par point.
+ * <p>
+ * Non thread-safe : une vue par appelant (ex : un GUI sur le main thread).
+ */
+public final class SeriesView {
+
+    long[] start = new long[0];
+    double[] open = new double[0];
+    double[] high = new double[0];
+    double[] low = new double[0];
+    double[] close = new double[0];
+    int size;
+
+    // Tableaux de travail : copie des bougies ou points sources avant regroupement
+    long[] scratchStart = new long[0];
+    double[] scratchOpen = new double[0];
+    double[] scratchHigh = new double[0];
+    double[] scratchLow = new double[0];
+    double[] scratchClose = new double[0];
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public long ts(int i) { return start[i]; }
+
+    public double open(int i) { return open[i]; }
+
+    public double high(int i) { return high[i]; }
+
+    public double low(int i) { return low[i]; }
+
+    public double close(int i) { return close[i]; }
+
+    /** Tableau des clôtures, valide sur les size() premières cases (pas de copie). */
+    public double[] closes() { return close; }
+
+    void clear() { size = 0; }
+
+    void append(long ts, double o, double h, double l, double c) {
+        if (size == start.length) {
+            int next = Math.max(16, size * 2);
+            start = Arrays.copyOf(start, next);
+            open = Arrays.copyOf(open, next);
+            high = Arrays.copyOf(high, next);
+            low = Arrays.copyOf(low, next);
+            close = Arrays.copyOf(close, next);
+        }
+        start[size] = ts;
+        open[size] = o;
+        high[size] = h;
+        low[size] = l;
+        close[size] = c;
+        size++;
+    }
+
+    void ensureScratch(int n) {
+        if (scratchStart.length >= n) return;
+        scratchStart = new long[n];
+        scratchOpen = new double[n];
+        scratchHigh = new double[n];
+        scratchLow = new double[n];
+        scratchClose = new double[n];
+    }
+}
@@ -0,0 +1,148 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table des symboles : chaque symbole (en minuscules) reçoit un petit identifiant entier,
+ * et son prix / sa date de mise à jour / son dernier accès sont stockés dans des tableaux primitifs.
+ * <p>
+ * Les écritures (rares : une par réponse de la source) sont sérialisées et publiées en release ;
+ * les lectures sont sans verrou ni allocation (acquire). Les différentes écritures d'un même symbole
+ * ("BTC", "btc", "Btc"...) sont mémorisées pour éviter un toLowerCase à chaque lecture.
+ */
+public class SymbolTable {
+
+    private static final VarHandle DOUBLES = MethodHandles.arrayElementVarHandle(double[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle BOOLEANS = MethodHandles.arrayElementVarHandle(boolean[].class);
+    private static final int MAX_ALIASES = 4096;
+
+    /** Tableaux publiés ensemble : un lecteur voit toujours un jeu cohérent de capacités. */
+    private static final class Slots {
+        final String[] names;
+        final double[] prices;
+        final long[] updatedAt;
+        final long[] accessedAt;
+        final long[] ttlMs; // 0 = TTL par défaut
+        final boolean[] restored; // prix relu d'un instantané, pas encore confirmé par la source
+
+        Slots(int capacity) {
+            names = new String[capacity];
+            prices = new double[capacity];
+            Arrays.fill(prices, Double.NaN);
+            updatedAt = new long[capacity];
+            accessedAt = new long[capacity];
+            ttlMs = new long[capacity];
+            restored = new boolean[capacity];
+        }
+    }
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<String, Integer> aliases = new ConcurrentHashMap<>();
+    private volatile Slots slots = new Slots(64);
+    private volatile int size = 0;
+
+    /** Identifiant du symbole, ou -1 s'il n'a jamais été enregistré. Sans allocation pour une écriture déjà vue. */
+    public int find(String symbol) {
+        Integer id = aliases.get(symbol);
+        if (id != null) return id;
+        id = ids.get(symbol.toLowerCase(Locale.ROOT));
+        if (id == null) return -1;
+        if (aliases.size() < MAX_ALIASES) aliases.put(symbol, id);
+        return id;
+    }
+
+    /** Identifiant du symbole, enregistré au besoin. */
+    public int intern(String symbol) {
+        int id = find(symbol);
+        if (id >= 0) return id;
+        synchronized (this) {
+            String sym = symbol.toLowerCase(Locale.ROOT);
+            Integer existing = ids.get(sym);
+            if (existing != null) return existing;
+            int next = size;
+            Slots current = slots;
+            if (next == current.names.length) {
+                Slots grown = new Slots(current.names.length * 2);
+                System.arraycopy(current.names, 0, grown.names, 0, next);
+                System.arraycopy(current.prices, 0, grown.prices, 0, next);
+                System.arraycopy(current.updatedAt, 0, grown.updatedAt, 0, next);
+                System.arraycopy(current.accessedAt, 0, grown.accessedAt, 0, next);
+                System.arraycopy(current.ttlMs, 0, grown.ttlMs, 0, next);
+                System.arraycopy(current.restored, 0, grown.restored, 0, next);
+                slots = grown;
+                current = grown;
+            }
+            current.names[next] = sym;
+            size = next + 1;
+            // Publication de l'id seulement une fois les tableaux prêts
+            ids.put(sym, next);
+            return next;
+        }
+    }
+
+    public int size() { return size; }
+
+    public String name(int id) { return slots.names[id]; }
+
+    /** Dernier prix connu, NaN si aucun. */
+    public double price(int id) {
+        return (double) DOUBLES.getAcquire(slots.prices, id);
+    }
+
+    /** Date (ms) de la dernière mise à jour du prix, 0 si aucune. */
+    public long updatedAt(int id) {
+        return (long) LONGS.getAcquire(slots.updatedAt, id);
+    }
+
+    public long accessedAt(int id) {
+        return (long) LONGS.getOpaque(slots.accessedAt, id);
+    }
+
+    /** Enregistre un prix et renvoie le précédent (NaN si aucun). */
+    public synchronized double update(int id, double price, long ts) {
+        Slots s = slots;
+        double previous = s.prices[id];
+        BOOLEANS.setRelease(s.restored, id, false);
+        DOUBLES.setRelease(s.prices, id, price);
+        LONGS.setRelease(s.updatedAt, id, ts);
+        return previous;
+    }
+
+    /** Enregistre un prix relu d'un instantané, avec sa date d'observation d'origine. */
+    public synchronized void restore(int id, double price, long ts) {
+        Slots s = slots;
+        BOOLEANS.setRelease(s.restored, id, true);
+        DOUBLES.setRelease(s.prices, id, price);
+        LONGS.setRelease(s.updatedAt, id, ts);
+    }
+
+    /** Vrai tant que le prix vient d'un instantané et n'a pas été remplacé par une réponse de la source. */
+    public boolean isRestored(int id) {
+        return (boolean) BOOLEANS.getAcquire(slots.restored, id);
+    }
+
+    /** Force l'expiration du prix sans l'effacer. */
+    public synchronized void expire(int id) {
+        LONGS.setRelease(slots.updatedAt, id, 0L);
+    }
+
+    /** TTL propre au symbole (ms), 0 si le TTL par défaut s'applique. */
+    public long ttl(int id) {
+        return (long) LONGS.getOpaque(slots.ttlMs, id);
+    }
+
+    public synchronized void setTtl(int id, long ttlMs) {
+        LONGS.setOpaque(slots.ttlMs, id, ttlMs);
+    }
+
+    /** Note un accès (best effort, sans verrou : sert uniquement à repérer les symboles chauds). */
+    public void touch(int id, long now) {
+        LONGS.setOpaque(slots.accessedAt, id, now);
+    }
+}
@@ -0,0 +1,57 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source synthétique pour les tests de charge : marche aléatoire géométrique par symbole,
+ * avec une latence simulée optionnelle. N'émet aucun appel réseau.
+ * La latence s'écoule sur l'executor fourni (celui des I/O du plugin), pas sur le ForkJoinPool commun.
+ */
+public class SyntheticPriceSource implements PriceSource {
+
+    private final Map<String, Double> last = new ConcurrentHashMap<>();
+    private final double volatility;
+    private final long latencyMs;
+    private final Executor executor;
+
+    public SyntheticPriceSource(double volatility, long latencyMs, Executor executor) {
+        this.volatility = Math.max(0.0, volatility);
+        this.latencyMs = Math.max(0L, latencyMs);
+        this.executor = executor;
+    }
+
+    @Override
+    public String getName() { return "synthetic"; }
+
+    @Override
+    public String resolveId(String symbol) { return symbol.toLowerCase(Locale.ROOT); }
+
+    @Override
+    public CompletableFuture<Map<String, Double>> fetchUsd(List<String> symbols) {
+        Map<String, Double> prices = new HashMap<>();
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (String sym : symbols) {
+            // Prix de départ stable par symbole, entre 1 et 1000
+            double price = last.compute(sym, (k, prev) -> prev == null
+                    ? 1.0 + Math.floorMod(k.hashCode(), 1000)
+                    : prev * Math.exp(volatility * rnd.nextGaussian()));
+            prices.put(sym, price);
+        }
+        if (latencyMs == 0) return CompletableFuture.completedFuture(prices);
+        return CompletableFuture.supplyAsync(() -> prices, CompletableFuture.delayedExecutor(latencyMs, TimeUnit.MILLISECONDS, executor));
+    }
+
+    @Override
+    public Health getHealth() { return Health.UP; }
+
+    @Override
+    public int getMaxBatchSize() { return Integer.MAX_VALUE; }
+}
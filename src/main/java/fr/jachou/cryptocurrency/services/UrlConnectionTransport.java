@@ -0,0 +1,54 @@
+package fr.jachou.cryptocurrency.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transport historique (HttpURLConnection bloquant exécuté sur l'executor I/O).
+ * Conservé comme solution de repli via api.transport: "urlconnection".
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+    private final Executor executor;
+
+    public UrlConnectionTransport(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<InputStream> get(String url, int timeoutMs) {
+        return CompletableFuture.supplyAsync(() -> {
+            HttpURLConnection conn;
+            int status;
+            try {
+                conn = (HttpURLConnection) new URL(url).openConnection();
+                conn.setRequestMethod("GET");
+                conn.setConnectTimeout(timeoutMs);
+                conn.setReadTimeout(timeoutMs);
+                conn.setRequestProperty("Accept", "application/json");
+                conn.setRequestProperty("Accept-Encoding", "gzip");
+                status = conn.getResponseCode();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (status != 200) {
+                conn.disconnect();
+                // Le statut remonte tel quel (pas dans une UncheckedIOException)
+                throw new CompletionException(new HttpStatusException(status));
+            }
+            try {
+                InputStream body = conn.getInputStream();
+                return "gzip".equalsIgnoreCase(conn.getContentEncoding()) ? new GZIPInputStream(body) : body;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+}
@@ -22,17 +22,45 @@ public class ChartFormatter {
 
     public static Stats stats(List<Double> vals) {
         if (vals == null || vals.isEmpty()) return new Stats(0,0,0,0,0);
-        double min = vals.stream().min(Double::compare).orElse(0.0);
-        double max = vals.stream().max(Double::compare).orElse(0.0);
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (double v : vals) {
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
         double first = vals.get(0);
         double last = vals.get(vals.size()-1);
         return new Stats(min, max, first, last, vals.size());
     }
 
+    /** Comme {@link #stats(List)} sur les n premières valeurs d'un tableau, sans boxing. */
+    public static Stats stats(double[] vals, int n) {
+        if (vals == null || n <= 0) return new Stats(0,0,0,0,0);
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (vals[i] < min) min = vals[i];
+            if (vals[i] > max) max = vals[i];
+        }
+        return new Stats(min, max, vals[0], vals[n-1], n);
+    }
+
+    /** Comme {@link #sparkline(List, String)} sur les n premières valeurs d'un tableau, sans boxing. */
+    public static String sparkline(double[] vals, int n, String glyphs) {
+        if (vals == null || n <= 0) return "";
+        Stats st = stats(vals, n);
+        if (glyphs == null || glyphs.isEmpty()) glyphs = "▁▂▃▄▅▆▇█";
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            int idx = (st.max == st.min) ? 0 : (int) Math.floor((vals[i] - st.min) / (st.max - st.min) * (glyphs.length() - 1));
+            idx = Math.max(0, Math.min(idx, glyphs.length() - 1));
+            sb.append(glyphs.charAt(idx));
+        }
+        return sb.toString();
+    }
+
     public static String sparkline(List<Double> vals, String glyphs) {
         if (vals == null || vals.isEmpty()) return "";
-        double min = vals.stream().min(Double::compare).orElse(0.0);
-        double max = vals.stream().max(Double::compare).orElse(0.0);
+        Stats st = stats(vals);
+        double min = st.min, max = st.max;
         if (glyphs == null || glyphs.isEmpty()) glyphs = "▁▂▃▄▅▆▇█";
         StringBuilder sb = new StringBuilder();
         for (double v : vals) {
@@ -0,0 +1,95 @@
+package fr.jachou.cryptocurrency.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Index par préfixe des symboles (stockés en majuscules), pour l'autocomplétion et la validation.
+ * Construit une fois puis lu sans verrou : ne pas modifier un trie déjà publié.
+ */
+public class SymbolTrie {
+
+    private static final class Node {
+        // Enfants triés par caractère (recherche dichotomique)
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        boolean terminal;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) return children[i];
+            int at = -i - 1;
+            char[] k = new char[keys.length + 1];
+            Node[] n = new Node[children.length + 1];
+            System.arraycopy(keys, 0, k, 0, at);
+            System.arraycopy(children, 0, n, 0, at);
+            System.arraycopy(keys, at, k, at + 1, keys.length - at);
+            System.arraycopy(children, at, n, at + 1, children.length - at);
+            k[at] = c;
+            n[at] = new Node();
+            keys = k;
+            children = n;
+            return n[at];
+        }
+    }
+
+    private final Node root = new Node();
+    private int size;
+
+    public void add(String symbol) {
+        String s = symbol.toUpperCase(Locale.ROOT);
+        if (s.isEmpty()) return;
+        Node node = root;
+        for (int i = 0; i < s.length(); i++) node = node.childOrCreate(s.charAt(i));
+        if (!node.terminal) size++;
+        node.terminal = true;
+    }
+
+    /** Insensible à la casse ; sans allocation pour un symbole ASCII (appelé à chaque lecture de prix). */
+    public boolean contains(String symbol) {
+        Node node = root;
+        for (int i = 0; i < symbol.length() && node != null; i++) {
+            char c = symbol.charAt(i);
+            if (c >= 0x80) {
+                // Hors ASCII, la mise en majuscules peut changer la longueur (ex : ß -> SS)
+                node = find(symbol.toUpperCase(Locale.ROOT));
+                break;
+            }
+            node = node.child(c >= 'a' && c <= 'z' ? (char) (c - 32) : c);
+        }
+        return node != null && node.terminal;
+    }
+
+    /** Au plus limit symboles commençant par prefix (insensible à la casse), dans l'ordre lexicographique. */
+    public List<String> complete(String prefix, int limit) {
+        String p = prefix.toUpperCase(Locale.ROOT);
+        List<String> out = new ArrayList<>();
+        Node node = find(p);
+        if (node != null && limit > 0) collect(node, new StringBuilder(p), out, limit);
+        return out;
+    }
+
+    public int size() { return size; }
+
+    private Node find(String s) {
+        Node node = root;
+        for (int i = 0; i < s.length() && node != null; i++) node = node.child(s.charAt(i));
+        return node;
+    }
+
+    private static void collect(Node node, StringBuilder path, List<String> out, int limit) {
+        if (node.terminal) out.add(path.toString());
+        for (int i = 0; i < node.keys.length && out.size() < limit; i++) {
+            path.append(node.keys[i]);
+            collect(node.children[i], path, out, limit);
+            path.setLength(path.length() - 1);
+        }
+    }
+}
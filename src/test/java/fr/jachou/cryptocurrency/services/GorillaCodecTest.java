@@ -0,0 +1,117 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GorillaCodecTest {
+
+    /** Encode puis décode, et compare dates et bits des prix point par point. */
+    private static byte[] roundTrip(long[] ts, double[] values) {
+        int n = ts.length;
+        byte[] block = GorillaCodec.encode(ts, values, n);
+        // Décalage non nul : le décodeur lit en absolu à partir d'offset
+        ByteBuffer buf = ByteBuffer.allocate(block.length + 3);
+        buf.put(3, block);
+        GorillaCodec.Decoder d = new GorillaCodec.Decoder(buf, 3);
+        assertEquals(n, d.count());
+        for (int i = 0; i < n; i++) {
+            assertTrue(d.next(), "point " + i + " manquant");
+            assertEquals(ts[i], d.ts(), "date du point " + i);
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(d.value()), "prix du point " + i);
+        }
+        assertFalse(d.next());
+        return block;
+    }
+
+    @Test
+    void emptyBlock() {
+        byte[] block = roundTrip(new long[0], new double[0]);
+        assertEquals(4, block.length);
+    }
+
+    @Test
+    void singlePoint() {
+        roundTrip(new long[]{1_700_000_000_123L}, new double[]{64_000.5});
+    }
+
+    @Test
+    void constantIntervalCostsTwoBitsPerPoint() {
+        int n = 1000;
+        long[] ts = new long[n];
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            ts[i] = 1_700_000_000_000L + i * 60_000L;
+            values[i] = 42.0;
+        }
+        byte[] block = roundTrip(ts, values);
+        // En-tête 4 + premier point 16 + premier intervalle sur 32 bits, puis 2 bits par point (dod nul, XOR nul)
+        assertTrue(block.length <= 20 + 5 + (2 * (n - 1) + 7) / 8, "taille " + block.length);
+    }
+
+    @Test
+    void irregularIntervalsInEveryBucket() {
+        // Delta de delta aux bornes de chaque largeur : 7, 9, 12, 32 bits puis le repli sur 64 bits
+        long[] dods = {0, 63, -64, 64, -65, 255, -256, 256, -257, 2047, -2048, 2048, -2049,
+                Integer.MAX_VALUE, Integer.MIN_VALUE, (long) Integer.MAX_VALUE + 1, (long) Integer.MIN_VALUE - 1,
+                1L << 40, -(1L << 40), Long.MAX_VALUE / 4, -(Long.MAX_VALUE / 4), 1, -1};
+        long[] ts = new long[dods.length + 2];
+        double[] values = new double[ts.length];
+        ts[0] = 1_700_000_000_000L;
+        long delta = 60_000L;
+        ts[1] = ts[0] + delta;
+        for (int i = 0; i < dods.length; i++) {
+            delta += dods[i];
+            ts[i + 2] = ts[i + 1] + delta;
+        }
+        for (int i = 0; i < values.length; i++) values[i] = 100.0 + i;
+        roundTrip(ts, values);
+    }
+
+    @Test
+    void repeatedValues() {
+        long[] ts = {1000, 2000, 3000, 4000, 5000};
+        double[] values = {1.5, 1.5, 1.5, 2.5, 2.5};
+        roundTrip(ts, values);
+    }
+
+    @Test
+    void changingMeaningfulBitWindow() {
+        double one = 1.0;
+        double[] values = {
+                one, Math.nextUp(one),           // XOR sur le bit de poids faible, zéros de tête bornés à 31
+                Math.nextUp(Math.nextUp(one)),    // fenêtre réutilisée
+                -one,                             // bit de signe : fenêtre élargie vers le haut
+                1e-300, 1e300,                    // exposants très différents
+                Double.longBitsToDouble(0x0000000000000001L),
+                Double.longBitsToDouble(0x8000000000000000L), // XOR 0x8000000000000001 : 64 bits significatifs
+                Double.longBitsToDouble(0x7FFFFFFFFFFFFFFEL), // réutilise la fenêtre de 64 bits
+                0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 64_000.25
+        };
+        long[] ts = new long[values.length];
+        for (int i = 0; i < ts.length; i++) ts[i] = 5_000L + i * 1_000L;
+        roundTrip(ts, values);
+    }
+
+    @Test
+    void randomWalk() {
+        Random rnd = new Random(21);
+        int n = 10_000;
+        long[] ts = new long[n];
+        double[] values = new double[n];
+        long t = 1_700_000_000_000L;
+        double price = 30_000.0;
+        for (int i = 0; i < n; i++) {
+            t += 60_000L + (rnd.nextInt(10) == 0 ? rnd.nextInt(5_000_000) - 2_000_000 : rnd.nextInt(50));
+            if (rnd.nextInt(3) != 0) price *= Math.exp(0.001 * rnd.nextGaussian());
+            ts[i] = t;
+            values[i] = price;
+        }
+        roundTrip(ts, values);
+    }
+}
@@ -0,0 +1,107 @@
+package fr.jachou.cryptocurrency.services;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpTransportTest {
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String base;
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> {
+            byte[] body = "{\"bitcoin\":{\"usd\":42.5}}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        // Ne répond jamais avant la fermeture du test
+        server.createContext("/hang", exchange -> {
+            try {
+                released.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {}
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        executor = Executors.newCachedThreadPool();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stop() {
+        released.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void httpClientReportsStatusUnwrapped() {
+        HttpTransport transport = new HttpClientTransport(2000, executor);
+        try {
+            assertStatus(transport, 404);
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    void urlConnectionReportsStatusUnwrapped() {
+        assertStatus(new UrlConnectionTransport(executor), 404);
+    }
+
+    @Test
+    void bodyIsReturnedOn200() throws Exception {
+        HttpTransport transport = new HttpClientTransport(2000, executor);
+        try (InputStream in = transport.get(base + "/ok", 2000).get(5, TimeUnit.SECONDS)) {
+            assertEquals(42.5, JsonPriceDecoder.simplePrice(in, "usd").get("bitcoin").doubleValue());
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    void closeDoesNotWaitForPendingRequests() {
+        HttpTransport transport = new HttpClientTransport(2000, executor);
+        CompletableFuture<InputStream> pending = transport.get(base + "/hang", 20_000);
+
+        long start = System.nanoTime();
+        transport.close();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "close() a bloqué");
+        assertThrows(ExecutionException.class, () -> pending.get(5, TimeUnit.SECONDS));
+    }
+
+    private void assertStatus(HttpTransport transport, int status) {
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> transport.get(base + "/missing", 2000).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof HttpTransport.HttpStatusException, "cause : " + e.getCause());
+        assertEquals(status, ((HttpTransport.HttpStatusException) e.getCause()).getStatus());
+    }
+}
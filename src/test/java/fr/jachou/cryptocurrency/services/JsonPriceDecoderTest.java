@@ -0,0 +1,177 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonPriceDecoderTest {
+
+    private static InputStream json(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Livre la réponse octet par octet pour traverser les recharges du tampon à chaque position. */
+    private static InputStream trickle(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new InputStream() {
+            private int pos;
+
+            @Override
+            public int read() {
+                return pos < bytes.length ? bytes[pos++] & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (pos >= bytes.length) return -1;
+                b[off] = bytes[pos++];
+                return 1;
+            }
+        };
+    }
+
+    private static Map<String, Double> simple(String text) throws IOException {
+        Map<String, Double> prices = JsonPriceDecoder.simplePrice(json(text), "usd");
+        assertEquals(prices, JsonPriceDecoder.simplePrice(trickle(text), "usd"));
+        return prices;
+    }
+
+    @Test
+    void simplePriceReadsNumbersInEveryForm() throws IOException {
+        Map<String, Double> prices = simple("{\"bitcoin\":{\"usd\":65000.1},\"a\":{\"usd\":-12.5},"
+                + "\"b\":{\"usd\":1.5e3},\"c\":{\"usd\":2E-8},\"d\":{\"usd\":-3.25e+2},\"e\":{\"usd\":0},"
+                + "\"f\":{\"usd\":0.000012345},\"g\":{\"usd\":123456789012345678901234567890}}");
+        assertEquals(65000.1, prices.get("bitcoin"));
+        assertEquals(-12.5, prices.get("a"));
+        assertEquals(1500.0, prices.get("b"));
+        assertEquals(2e-8, prices.get("c"));
+        assertEquals(-325.0, prices.get("d"));
+        assertEquals(0.0, prices.get("e"));
+        assertEquals(0.000012345, prices.get("f"));
+        assertEquals(1.2345678901234568e29, prices.get("g"));
+        assertEquals(8, prices.size());
+    }
+
+    @Test
+    void simplePriceSkipsNullsUnknownValuesAndMissingCurrency() throws IOException {
+        Map<String, Double> prices = simple(" {\n \"bitcoin\" : { \"eur\" : 60000 , \"usd\" : 65000 ,"
+                + " \"usd_market_cap\" : {\"x\":[1,{\"y\":\"]}\\\"\"}]}, \"last\":null } ,"
+                + "\"ethereum\":{\"usd\":null,\"eur\":3000},"
+                + "\"solana\":{\"eur\":140,\"tags\":[\"usd\",[],{}]},"
+                + "\"tether\":{},"
+                + "\"odd\":[1,2,{\"usd\":5}],"
+                + "\"flag\":true,"
+                + "\"cardano\":{\"extra\":{\"usd\":9},\"usd\":0.45}\t}\n");
+        assertEquals(Map.of("bitcoin", 65000.0, "cardano", 0.45), prices);
+    }
+
+    @Test
+    void simplePriceDecodesEscapedKeys() throws IOException {
+        Map<String, Double> prices = simple("{\"bit\\u0063oin\":{\"u\\u0073d\":1},"
+                + "\"a\\\"b\\\\c\\/d\":{\"usd\":2},"
+                + "\"caf\\u00e9\":{\"usd\":3},"
+                + "\"\\ud83d\\ude80-coin\":{\"usd\":4},"
+                + "\"\\u20ac\\n\":{\"usd\":5}}");
+        assertEquals(1.0, prices.get("bitcoin"));
+        assertEquals(2.0, prices.get("a\"b\\c/d"));
+        assertEquals(3.0, prices.get("café"));
+        assertEquals(4.0, prices.get(new String(Character.toChars(0x1F680)) + "-coin"));
+        assertEquals(5.0, prices.get("€\n"));
+    }
+
+    @Test
+    void simplePriceRejectsTruncatedInput() {
+        String full = "{\"bitcoin\":{\"usd\":65000.5,\"eur\":\"x\"},\"ethereum\":{\"usd\":3000}}";
+        // Chaque préfixe strict doit échouer plutôt que renvoyer une table partielle
+        for (int cut = 0; cut < full.length(); cut++) {
+            String prefix = full.substring(0, cut);
+            assertThrows(IOException.class, () -> JsonPriceDecoder.simplePrice(json(prefix), "usd"), "préfixe " + prefix);
+        }
+        assertThrows(IOException.class, () -> JsonPriceDecoder.simplePrice(json("{\"a\":{\"usd\":-}}"), "usd"));
+        assertThrows(IOException.class, () -> JsonPriceDecoder.simplePrice(json("{\"a\":{\"usd\":1.2.3}}"), "usd"));
+        assertThrows(IOException.class, () -> JsonPriceDecoder.simplePrice(json("{\"a\\u00\":{}}"), "usd"));
+    }
+
+    @Test
+    void marketChartStreamsPointsAndSkipsTheRest() throws IOException {
+        String text = "{\"market_caps\":[[1,2],[3,4]],\"prices\":[[1700000000000,64000.5],"
+                + "[1700000300000,null],[1700000600000,-1.5e-3,\"extra\",[9]],[1.7000009E12,7]],"
+                + "\"meta\":{\"prices\":[[5,5]]},\"total_volumes\":[]}";
+        for (InputStream in : List.of(json(text), trickle(text))) {
+            List<String> points = new ArrayList<>();
+            int n = JsonPriceDecoder.marketChart(in, "prices", (ts, v) -> points.add(ts + "=" + v));
+            assertEquals(3, n);
+            assertEquals(List.of("1700000000000=64000.5", "1700000600000=-0.0015", "1700000900000=7.0"), points);
+        }
+        assertEquals(0, JsonPriceDecoder.marketChart(json("{\"prices\":[]}"), "prices", (ts, v) -> {}));
+        assertEquals(0, JsonPriceDecoder.marketChart(json("{}"), "prices", (ts, v) -> {}));
+    }
+
+    @Test
+    void marketChartRejectsTruncatedInput() {
+        String full = "{\"prices\":[[1700000000000,64000.5],[1700000300000,64001]],\"total_volumes\":[[1,2]]}";
+        for (int cut = 0; cut < full.length(); cut++) {
+            String prefix = full.substring(0, cut);
+            assertThrows(IOException.class, () -> JsonPriceDecoder.marketChart(json(prefix), "prices", (ts, v) -> {}),
+                    "préfixe " + prefix);
+        }
+    }
+
+    @Test
+    void fastPathMatchesParseDouble() throws IOException {
+        Random rnd = new Random(16);
+        StringBuilder sb = new StringBuilder("{");
+        List<String> literals = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int digits = 1 + rnd.nextInt(17);
+            StringBuilder num = new StringBuilder();
+            if (rnd.nextBoolean()) num.append('-');
+            for (int d = 0; d < digits; d++) num.append((char) ('0' + rnd.nextInt(10)));
+            int dot = rnd.nextInt(digits + 1);
+            if (dot < digits) num.insert(num.length() - digits + dot, dot == 0 ? "0." : ".");
+            // Zéros de tête après la virgule : petites valeurs, mantisse inchangée
+            if (dot == 0 && rnd.nextBoolean()) num.insert(num.indexOf(".") + 1, "00000");
+            String literal = num.toString();
+            literals.add(literal);
+            if (i > 0) sb.append(',');
+            sb.append("\"k").append(i).append("\":{\"usd\":").append(literal).append('}');
+        }
+        Map<String, Double> prices = JsonPriceDecoder.simplePrice(json(sb.append('}').toString()), "usd");
+        for (int i = 0; i < literals.size(); i++) {
+            String literal = literals.get(i);
+            assertEquals(Double.doubleToRawLongBits(Double.parseDouble(literal)),
+                    Double.doubleToRawLongBits(prices.get("k" + i)), literal);
+        }
+        assertEquals(literals.size(), prices.size());
+    }
+
+    @Test
+    void recordsReadsRequestedStringFields() throws IOException {
+        String text = "[{\"id\":\"bitcoin\",\"symbol\":\"btc\",\"name\":\"Bitcoin\",\"platforms\":{\"x\":\"y\"}},"
+                + "{\"symbol\":\"eth\",\"image\":[1,{\"id\":\"nested\"}],\"id\":\"ethereum\"},"
+                + "{\"id\":null,\"symbol\":\"bad\"},{},7,{\"id\":\"sol\\u0061na\",\"symbol\":5}]";
+        for (InputStream in : List.of(json(text), trickle(text))) {
+            List<String> out = new ArrayList<>();
+            int n = JsonPriceDecoder.records(in, new String[]{"id", "symbol"}, v -> out.add(v[0] + "/" + v[1]));
+            assertEquals(5, n);
+            assertEquals(List.of("bitcoin/btc", "ethereum/eth", "null/bad", "null/null", "solana/null"), out);
+        }
+        assertEquals(0, JsonPriceDecoder.records(json(" [ ] "), new String[]{"id"}, v -> {}));
+        String full = "[{\"id\":\"bitcoin\",\"symbol\":\"btc\"},{\"id\":\"ethereum\"}]";
+        for (int cut = 0; cut < full.length(); cut++) {
+            String prefix = full.substring(0, cut);
+            assertThrows(IOException.class, () -> JsonPriceDecoder.records(json(prefix), new String[]{"id"}, v -> {}),
+                    "préfixe " + prefix);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package fr.jachou.cryptocurrency.services;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceServiceTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private HttpServer server;
+    private ExecutorService executor;
+    private HttpTransport http;
+    private PriceService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestBukkit.install();
+        // Serveur local qui répond 404 à tout
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            calls.incrementAndGet();
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        // En-têtes et début du corps, puis plus rien
+        server.createContext("/stall", exchange -> {
+            calls.incrementAndGet();
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write("{\"nope\":{".getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseBody().flush();
+            try {
+                stalled.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {}
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        executor = Executors.newCachedThreadPool();
+        service = new PriceService();
+        service.configureBackoff(0, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        stalled.countDown();
+        if (http != null) http.close();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** Source hors service, au nom fixe pour relire les instantanés. */
+    private static final class DownSource implements PriceSource {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override public String getName() { return "down"; }
+        @Override public String resolveId(String symbol) { return symbol; }
+        @Override public Health getHealth() { return Health.DOWN; }
+
+        @Override
+        public CompletableFuture<Map<String, Double>> fetchUsd(List<String> symbols) {
+            calls.incrementAndGet();
+            return CompletableFuture.failedFuture(new IOException("hors service"));
+        }
+    }
+
+    /** Répond une fois (prix 10), puis tombe en panne. */
+    private static final class FlakySource implements PriceSource {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override public String getName() { return "down"; }
+        @Override public String resolveId(String symbol) { return symbol; }
+        @Override public Health getHealth() { return Health.UP; }
+
+        @Override
+        public CompletableFuture<Map<String, Double>> fetchUsd(List<String> symbols) {
+            if (calls.getAndIncrement() > 0) return CompletableFuture.failedFuture(new IOException("hors service"));
+            Map<String, Double> prices = new HashMap<>();
+            for (String sym : symbols) prices.put(sym, 10.0);
+            return CompletableFuture.completedFuture(prices);
+        }
+    }
+
+    private File snapshot(PriceSnapshot.Entry... entries) throws IOException {
+        File file = Files.createTempFile("prices", ".dat").toFile();
+        file.deleteOnExit();
+        PriceSnapshot.write(file, "down", List.of(entries));
+        return file;
+    }
+
+    /** Source CoinGecko dont les requêtes partent vers le serveur local, via le vrai transport HttpClient. */
+    private void useLocalServer() {
+        useLocalServer("/api");
+    }
+
+    private void useLocalServer(String path) {
+        HttpTransport real = new HttpClientTransport(2000, executor);
+        http = real;
+        String local = "http://127.0.0.1:" + server.getAddress().getPort() + path;
+        HttpTransport redirected = (url, timeoutMs) -> real.get(local, timeoutMs);
+        CoinRegistry coins = new CoinRegistry(redirected, new RateLimiter(), Runnable::run);
+        service.setSource(new CoinGeckoPriceSource(redirected, 2000, coins));
+    }
+
+    @Test
+    void notFoundEntersNegativeCache() {
+        useLocalServer();
+
+        ExecutionException first = assertThrows(ExecutionException.class,
+                () -> service.getPriceUsd("nope").get(5, TimeUnit.SECONDS));
+        assertTrue(first.getCause() instanceof NoPriceException);
+        assertEquals(1, service.getNegativeCacheSize());
+
+        // Seconde lecture : rejetée sans appel réseau
+        assertThrows(ExecutionException.class, () -> service.getPriceUsd("nope").get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, service.getRejectedLookups());
+    }
+
+    @Test
+    void notFoundIsNotRetriedNorCountedAsFailure() {
+        service.configureHttp(2000, 3);
+        useLocalServer();
+
+        assertThrows(ExecutionException.class, () -> service.getPriceUsd("nope").get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, service.getNetworkCalls());
+        assertEquals(0, service.getCircuitBreaker().getWindowFailures());
+    }
+
+    @Test
+    void snapshotKeepsObservationTime() throws Exception {
+        service.setSource(new DownSource());
+        long now = System.currentTimeMillis();
+        long old = now - 3 * 86_400_000L;
+        assertEquals(2, service.loadSnapshot(snapshot(
+                new PriceSnapshot.Entry("btc", 50_000.0, old),
+                new PriceSnapshot.Entry("eth", 3_000.0, now - 5_000))));
+
+        File saved = Files.createTempFile("prices", ".dat").toFile();
+        saved.deleteOnExit();
+        service.saveSnapshot(saved);
+        for (PriceSnapshot.Entry e : PriceSnapshot.read(saved).entries()) {
+            assertEquals(e.symbol().equals("btc") ? old : now - 5_000, e.ts(), e.symbol());
+        }
+    }
+
+    @Test
+    void restoredPriceIsServedToCommandsAndRevalidated() throws Exception {
+        DownSource down = new DownSource();
+        service.setSource(down);
+        service.loadSnapshot(snapshot(new PriceSnapshot.Entry("eth", 3_000.0, System.currentTimeMillis() - 5_000)));
+
+        assertEquals(3_000.0, service.getPriceUsd("eth").get(5, TimeUnit.SECONDS).doubleValue());
+        // Servi tout de suite mais revalidé en fond, bien que plus récent que le TTL
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (down.calls.get() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertTrue(down.calls.get() > 0);
+    }
+
+    @Test
+    void tradeRejectsRestoredPriceWhenSourceFails() throws Exception {
+        service.setSource(new DownSource());
+        service.loadSnapshot(snapshot(new PriceSnapshot.Entry("eth", 3_000.0, System.currentTimeMillis() - 5_000)));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> service.getPriceUsd("eth", RateLimiter.Priority.TRADE).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof NoPriceException, "cause : " + e.getCause());
+    }
+
+    @Test
+    void tradeRejectsExpiredPriceWhenSourceFails() throws Exception {
+        service.configureHttp(1000, 0);
+        service.setSource(new FlakySource());
+        assertEquals(10.0, service.getPriceUsd("sol", RateLimiter.Priority.TRADE).get(5, TimeUnit.SECONDS).doubleValue());
+        service.refresh("sol");
+
+        // Une commande peut se replier sur le dernier prix connu, pas un trade
+        assertEquals(10.0, service.getPriceUsd("sol").get(5, TimeUnit.SECONDS).doubleValue());
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> service.getPriceUsd("sol", RateLimiter.Priority.TRADE).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof NoPriceException, "cause : " + e.getCause());
+    }
+
+    @Test
+    void tradeIgnoresLongerAdaptiveTtl() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        service.setSource(new PriceSource() {
+            @Override public String getName() { return "counting"; }
+            @Override public String resolveId(String symbol) { return symbol; }
+            @Override public Health getHealth() { return Health.UP; }
+
+            @Override
+            public CompletableFuture<Map<String, Double>> fetchUsd(List<String> symbols) {
+                double price = fetches.incrementAndGet();
+                Map<String, Double> prices = new HashMap<>();
+                for (String sym : symbols) prices.put(sym, price);
+                return CompletableFuture.completedFuture(prices);
+            }
+        });
+        service.configureCache(5, false, 0, 5);
+        service.configureAdaptiveTtl(true, 5, 300, 0.25);
+        assertEquals(1.0, service.getPriceUsd("btc").get(5, TimeUnit.SECONDS).doubleValue());
+        // Série parfaitement calme : TTL adaptatif au maximum (300 s), bien au-delà de ttl_seconds (5 s)
+        service.updateVolatility("btc", 0.0);
+        Thread.sleep(5_100);
+
+        assertEquals(1.0, service.getPriceUsd("btc").get(5, TimeUnit.SECONDS).doubleValue());
+        assertEquals(1, fetches.get());
+        assertEquals(2.0, service.getPriceUsd("btc", RateLimiter.Priority.TRADE).get(5, TimeUnit.SECONDS).doubleValue());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void tradeRejectsExpiredPriceWhileBreakerIsOpen() throws Exception {
+        service.configureHttp(1000, 0);
+        service.configureCircuitBreaker(1, 30, 60, 0.0);
+        service.setSource(new FlakySource());
+        service.getPriceUsd("ada", RateLimiter.Priority.TRADE).get(5, TimeUnit.SECONDS);
+        service.refresh("ada");
+        service.getPriceUsd("ada").get(5, TimeUnit.SECONDS);
+        assertTrue(service.getCircuitBreaker().isOpen());
+
+        assertEquals(10.0, service.getPriceUsd("ada").get(5, TimeUnit.SECONDS).doubleValue());
+        assertFalse(service.getPricesUsd(List.of("ada"), RateLimiter.Priority.TRADE).get(5, TimeUnit.SECONDS).containsKey("ada"));
+    }
+
+    @Test
+    void breakerRejectionSpendsNoRateLimitToken() throws Exception {
+        service.configureHttp(5000, 0);
+        service.configureCircuitBreaker(1, 1, 60, 0.0);
+        AtomicInteger fetches = new AtomicInteger();
+        CompletableFuture<Map<String, Double>> hung = new CompletableFuture<>();
+        service.setSource(new PriceSource() {
+            @Override public String getName() { return "probe"; }
+            @Override public String resolveId(String symbol) { return symbol; }
+            @Override public Health getHealth() { return Health.UP; }
+
+            @Override
+            public CompletableFuture<Map<String, Double>> fetchUsd(List<String> symbols) {
+                // Premier appel en échec (ouverture), puis la sonde reste sans réponse
+                if (fetches.getAndIncrement() == 0) return CompletableFuture.failedFuture(new IOException("hors service"));
+                return hung;
+            }
+        });
+        service.getPricesUsd(List.of("a")).get(5, TimeUnit.SECONDS);
+        assertTrue(service.getCircuitBreaker().isOpen());
+        Thread.sleep(1_100);
+
+        service.getPricesUsd(List.of("b"));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, service.getCircuitBreaker().getState());
+        long granted = service.getRateLimiter().getGranted(RateLimiter.Priority.COMMAND);
+        assertTrue(service.getPricesUsd(List.of("c")).get(5, TimeUnit.SECONDS).isEmpty());
+        assertEquals(granted, service.getRateLimiter().getGranted(RateLimiter.Priority.COMMAND));
+        assertEquals(2, fetches.get());
+        hung.complete(Map.of());
+    }
+
+    @Test
+    void stalledBodyReleasesTheInFlightClaim() {
+        service.configureHttp(1000, 0);
+        service.configureBackoff(0, 0);
+        useLocalServer("/stall");
+
+        long start = System.nanoTime();
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> service.getPriceUsd("nope").get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof NoPriceException, "cause : " + e.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(0, service.getInFlightCount());
+    }
+
+    @Test
+    void hedgeDoesNotJoinOnceEveryRequestFailed() {
+        AtomicInteger outstanding = new AtomicInteger(1);
+        assertTrue(PriceService.joinOutstanding(outstanding));
+        assertEquals(2, outstanding.get());
+
+        outstanding.set(0);
+        assertFalse(PriceService.joinOutstanding(outstanding));
+        assertEquals(0, outstanding.get());
+    }
+}
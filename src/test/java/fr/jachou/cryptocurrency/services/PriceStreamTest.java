@@ -0,0 +1,189 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceStreamTest {
+
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private ExecutorService executor;
+    private WsServer server;
+    private PriceStream stream;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestBukkit.install();
+        executor = Executors.newCachedThreadPool();
+        server = new WsServer();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (stream != null) stream.close();
+        server.close();
+        executor.shutdownNow();
+    }
+
+    private PriceStream newStream(long silenceMs) {
+        PriceStream s = new PriceStream("ws://127.0.0.1:" + server.port() + "/ws", "usdt", 1000, 50, silenceMs, executor,
+                (symbol, price, ts) -> received.add(symbol + "=" + price));
+        s.setSymbols(List.of("BTC", "ETH"));
+        return s;
+    }
+
+    @Test
+    void decodesObjectsAndArraysForTheQuote() {
+        List<String> out = new ArrayList<>();
+        PriceStream decoder = new PriceStream("ws://127.0.0.1:1/ws", "usdt", 1, executor,
+                (symbol, price, ts) -> out.add(symbol + "=" + price + "@" + ts));
+        decoder.setSymbols(List.of("btc", "sol", "ada", "eth"));
+
+        decoder.decode("[{\"e\":\"24hrMiniTicker\",\"s\":\"BTCUSDT\",\"c\":\"64000.5\",\"x\":true},"
+                + "{\"s\":\"ETHBTC\",\"c\":\"0.05\"},{\"s\":\"USDT\",\"c\":\"1\"},"
+                + "{\"n\":null,\"s\":\"SOLUSDT\",\"c\":150.25,\"l\":[1,2]}]", 42L);
+        decoder.decode("{\"s\":\"ADAUSDT\",\"c\":\"oops\"}", 43L);
+        // Prix avant la paire, paire non suivie, paire suivie dans une autre cotation
+        decoder.decode("[{\"c\":\"3000\",\"s\":\"ETHUSDT\"},{\"s\":\"DOGEUSDT\",\"c\":\"0.1\"},"
+                + "{\"s\":\"ETHUSDC\",\"c\":\"2999\"},{\"s\":\"ETHUSDTX\",\"c\":\"1\"}]", 44L);
+
+        assertEquals(List.of("btc=64000.5@42", "sol=150.25@42", "eth=3000.0@44"), out);
+        assertEquals(4, decoder.getSymbolCount());
+        decoder.setSymbols(List.of("BTC", "btc"));
+        assertEquals(1, decoder.getSymbolCount());
+    }
+
+    @Test
+    void reconnectsAfterDroppedConnection() throws Exception {
+        stream = newStream(60_000);
+        stream.start();
+
+        server.next().drop();
+        WsServer.Conn second = server.next();
+        second.sendText("{\"s\":\"ETHUSDT\",\"c\":\"3000\"}");
+        assertEquals("ETH=3000.0", received.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, stream.getReconnectCount());
+        assertEquals(1, stream.getMessageCount());
+        assertTrue(stream.isConnected());
+    }
+
+    @Test
+    void watchdogReconnectsSilentFeed() throws Exception {
+        stream = newStream(300);
+        stream.start();
+
+        server.next();
+        // Aucun message : le watchdog coupe la connexion muette et en ouvre une autre
+        WsServer.Conn second = server.next();
+        assertTrue(stream.getReconnectCount() >= 1);
+        second.sendText("{\"s\":\"BTCUSDT\",\"c\":\"1.5\"}");
+        assertEquals("BTC=1.5", received.poll(5, TimeUnit.SECONDS));
+    }
+
+    /** Serveur WebSocket minimal : poignée de main puis trames texte non masquées vers le client. */
+    private static final class WsServer implements AutoCloseable {
+        private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+        private final ServerSocket socket = new ServerSocket(0, 16, InetAddress.getLoopbackAddress());
+        private final BlockingQueue<Conn> accepted = new LinkedBlockingQueue<>();
+        private final List<Socket> open = new ArrayList<>();
+
+        WsServer() throws IOException {
+            Thread acceptor = new Thread(this::acceptLoop, "ws-test-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() { return socket.getLocalPort(); }
+
+        /** Prochaine connexion acceptée (échoue au bout de 5 s). */
+        Conn next() throws InterruptedException {
+            Conn conn = accepted.poll(5, TimeUnit.SECONDS);
+            assertNotNull(conn, "aucune connexion du flux");
+            return conn;
+        }
+
+        private void acceptLoop() {
+            while (!socket.isClosed()) {
+                try {
+                    Socket s = socket.accept();
+                    synchronized (open) { open.add(s); }
+                    accepted.add(handshake(s));
+                } catch (IOException | NoSuchAlgorithmException e) {
+                    return;
+                }
+            }
+        }
+
+        private static Conn handshake(Socket s) throws IOException, NoSuchAlgorithmException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.ISO_8859_1));
+            String key = null;
+            for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+                if (line.toLowerCase(Locale.ROOT).startsWith("sec-websocket-key:")) key = line.substring(18).trim();
+            }
+            byte[] sha1 = MessageDigest.getInstance("SHA-1").digest((key + GUID).getBytes(StandardCharsets.ISO_8859_1));
+            OutputStream out = s.getOutputStream();
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + Base64.getEncoder().encodeToString(sha1) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            return new Conn(s);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+            synchronized (open) {
+                for (Socket s : open) s.close();
+            }
+        }
+
+        static final class Conn {
+            private final Socket socket;
+
+            Conn(Socket socket) { this.socket = socket; }
+
+            void sendText(String text) throws IOException {
+                byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+                OutputStream out = socket.getOutputStream();
+                out.write(0x81);
+                if (payload.length < 126) {
+                    out.write(payload.length);
+                } else {
+                    out.write(126);
+                    out.write(payload.length >>> 8);
+                    out.write(payload.length & 0xFF);
+                }
+                out.write(payload);
+                out.flush();
+            }
+
+            /** Coupe la connexion TCP sans trame de fermeture. */
+            void drop() throws IOException { socket.close(); }
+        }
+    }
+}
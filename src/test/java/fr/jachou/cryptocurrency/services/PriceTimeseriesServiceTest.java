@@ -0,0 +1,129 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceTimeseriesServiceTest {
+
+    private static final long DAY = 86_400_000L;
+
+    /** Source d'historique : un point toutes les 5 minutes sur le nombre de jours demandé. */
+    private static final class HistorySource implements PriceSource {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override public String getName() { return "history"; }
+        @Override public String resolveId(String symbol) { return symbol; }
+        @Override public CompletableFuture<Map<String, Double>> fetchUsd(List<String> symbols) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        @Override public Health getHealth() { return Health.UP; }
+        @Override public boolean supportsHistory() { return true; }
+
+        @Override
+        public CompletableFuture<Integer> fetchHistoryUsd(String symbol, int days, JsonPriceDecoder.PointSink sink) {
+            calls.incrementAndGet();
+            long now = System.currentTimeMillis();
+            int n = 0;
+            for (long ts = now - days * DAY; ts <= now; ts += 300_000L, n++) sink.accept(ts, 100.0 + n % 7);
+            return CompletableFuture.completedFuture(n);
+        }
+    }
+
+    private final HistorySource source = new HistorySource();
+    private PriceService prices;
+    private PriceTimeseriesService series;
+    private File dir;
+
+    @BeforeEach
+    void setUp() {
+        TestBukkit.install();
+        prices = new PriceService();
+        prices.setSource(source);
+        series = new PriceTimeseriesService(null, prices);
+        series.configure(360, 60);
+        series.configureIndicators(List.of("sma20", "rsi14"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        prices.shutdown();
+        if (dir == null) return;
+        try (Stream<Path> files = Files.walk(dir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void backfillFillsSeriesOnce() throws Exception {
+        int added = series.backfill(List.of("BTC"), 1).get(5, TimeUnit.SECONDS);
+        assertEquals(289, added);
+        RollingStats.Snapshot d1 = series.getStats("BTC", "d1");
+        assertNotNull(d1);
+        assertEquals(289, d1.count());
+        assertTrue(series.getIndicator("BTC", "sma20").value() > 0);
+
+        // Le jour demandé est couvert : aucun nouvel appel
+        assertEquals(0, series.backfill(List.of("BTC"), 1).get(5, TimeUnit.SECONDS));
+        assertEquals(1, source.calls.get());
+    }
+
+    @Test
+    void coverageCheckHonoursConfiguredDays() throws Exception {
+        series.backfill(List.of("ETH"), 1).get(5, TimeUnit.SECONDS);
+        // Un seul jour connu : une demande sur 3 jours relance l'historique
+        int added = series.backfill(List.of("ETH"), 3).get(5, TimeUnit.SECONDS);
+        assertTrue(added > 0, "ajoutés : " + added);
+        assertEquals(2, source.calls.get());
+        assertEquals(0, series.backfill(List.of("ETH"), 3).get(5, TimeUnit.SECONDS));
+        assertEquals(2, source.calls.get());
+    }
+
+    @Test
+    void backfillIsPersistedBehindLivePoints() throws Exception {
+        dir = Files.createTempDirectory("series").toFile();
+        // Un échantillon en direct est déjà sur disque : tout l'historique est plus ancien que lui
+        long live = System.currentTimeMillis() - 120_000L;
+        SeriesStore seeded = new SeriesStore(dir, 7 * DAY);
+        seeded.open();
+        seeded.append("BTC", live, 99.0);
+        seeded.flush();
+        assertEquals(1, series.openStore(dir, 7));
+
+        int added = series.backfill(List.of("BTC"), 1).get(5, TimeUnit.SECONDS);
+        assertEquals(289, added);
+        series.stop();
+
+        SeriesStore reopened = new SeriesStore(dir, 7 * DAY);
+        reopened.open();
+        List<Long> stored = new ArrayList<>();
+        reopened.read("BTC", Long.MIN_VALUE, Long.MAX_VALUE, (ts, price) -> stored.add(ts));
+        assertEquals(290, stored.size());
+        for (int i = 1; i < stored.size(); i++) assertTrue(stored.get(i - 1) < stored.get(i), "points non triés");
+        assertTrue(stored.contains(live));
+
+        // Relu au redémarrage : le jour est couvert, aucun nouvel appel
+        PriceTimeseriesService restarted = new PriceTimeseriesService(null, prices);
+        restarted.configure(360, 60);
+        assertEquals(290, restarted.openStore(dir, 7));
+        assertEquals(0, restarted.backfill(List.of("BTC"), 1).get(5, TimeUnit.SECONDS));
+        assertEquals(1, source.calls.get());
+    }
+}
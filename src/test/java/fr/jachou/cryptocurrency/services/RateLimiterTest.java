@@ -0,0 +1,76 @@
+package fr.jachou.cryptocurrency.services;
+
+import fr.jachou.cryptocurrency.services.RateLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private final Executor executor = task -> Thread.ofVirtual().start(task);
+
+    @Test
+    void everyLaneCanDrawFromASingleTokenBucket() {
+        for (Priority priority : Priority.values()) {
+            RateLimiter limiter = new RateLimiter();
+            limiter.configure(true, 60, 1);
+            assertEquals(0L, limiter.millisUntilAvailable(priority), priority.name());
+            assertTrue(limiter.tryAcquire(priority), priority.name());
+            assertFalse(limiter.tryAcquire(priority), priority.name());
+        }
+    }
+
+    @Test
+    void waitEstimateIsReachable() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter();
+        // 600 requêtes/min : un jeton toutes les 100 ms
+        limiter.configure(true, 600, 2);
+        while (limiter.tryAcquire(Priority.TRADE)) { }
+        long wait = limiter.millisUntilAvailable(Priority.PLACEHOLDER);
+        assertTrue(wait > 0 && wait <= 200, "attente : " + wait);
+        Thread.sleep(wait + 20);
+        assertTrue(limiter.tryAcquire(Priority.PLACEHOLDER));
+    }
+
+    @Test
+    void lowPriorityLanesKeepAReserveForTrades() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.configure(true, 1, 10);
+        int placeholders = 0;
+        while (limiter.tryAcquire(Priority.PLACEHOLDER)) placeholders++;
+        // Plancher de 40 % : 6 jetons sur 10, le reste pour les autres voies
+        assertEquals(6, placeholders);
+        assertTrue(limiter.tryAcquire(Priority.SAMPLER));
+        assertTrue(limiter.tryAcquire(Priority.COMMAND));
+        assertTrue(limiter.tryAcquire(Priority.TRADE));
+    }
+
+    @Test
+    void acquireWaitsForTheNextToken() throws Exception {
+        RateLimiter limiter = new RateLimiter();
+        limiter.configure(true, 600, 1);
+        assertTrue(limiter.tryAcquire(Priority.SAMPLER));
+        limiter.acquire(Priority.SAMPLER, 2_000, executor).get(3, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void acquireGivesUpAtTheDeadline() {
+        RateLimiter limiter = new RateLimiter();
+        // Un jeton par minute : rien avant l'échéance
+        limiter.configure(true, 1, 1);
+        assertTrue(limiter.tryAcquire(Priority.SAMPLER));
+        long start = System.nanoTime();
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> limiter.acquire(Priority.SAMPLER, 300, executor).get(3, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TimeoutException, "cause : " + e.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+}
@@ -0,0 +1,101 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayPriceSourceTest {
+
+    private File file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestBukkit.install();
+        file = Files.createTempFile("replay", ".csv").toFile();
+        // btc toutes les 10 s, eth démarre plus tard ; lignes volontairement désordonnées
+        Files.writeString(file.toPath(), String.join("\n",
+                "timestamp_ms,symbol,price",
+                "# commentaire",
+                "1000,BTC,100",
+                "21000,btc,102",
+                "11000,btc,101",
+                "16000,eth,10",
+                "31000,btc,103",
+                ""), StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        file.delete();
+    }
+
+    private static double price(ReplayPriceSource source, String symbol) throws Exception {
+        return source.fetchUsd(List.of(symbol)).get().get(symbol);
+    }
+
+    @Test
+    void zeroSpeedAdvancesOneTickPerFetch() throws Exception {
+        ReplayPriceSource looping = new ReplayPriceSource(file, true, 0.0);
+        double[] expected = {100, 101, 102, 103, 100};
+        for (double e : expected) assertEquals(e, price(looping, "btc"));
+
+        ReplayPriceSource once = new ReplayPriceSource(file, false, 0.0);
+        for (int i = 0; i < 3; i++) price(once, "btc");
+        assertEquals(103.0, price(once, "btc"));
+        assertEquals(103.0, price(once, "btc"));
+        assertEquals(10.0, price(once, "eth"));
+    }
+
+    @Test
+    void positiveSpeedFollowsRecordedTimestamps() throws Exception {
+        AtomicLong now = new AtomicLong(5_000_000L);
+        ReplayPriceSource source = new ReplayPriceSource(file, false, 2.0, now::get);
+
+        // Le premier appel fixe l'origine ; les appels répétés sans temps écoulé ne bougent pas
+        assertEquals(100.0, price(source, "btc"));
+        assertEquals(100.0, price(source, "btc"));
+        assertEquals(10.0, price(source, "eth"), "avant son premier tick, eth renvoie ce premier tick");
+
+        now.addAndGet(4_999); // 9,998 s enregistrées
+        assertEquals(100.0, price(source, "btc"));
+        now.addAndGet(1);     // 10 s enregistrées : tick à 11000
+        assertEquals(101.0, price(source, "btc"));
+        now.addAndGet(5_000); // 20 s : tick à 21000
+        assertEquals(102.0, price(source, "btc"));
+
+        now.addAndGet(60_000); // bien au-delà de la fin : reste sur le dernier tick
+        assertEquals(103.0, price(source, "btc"));
+        assertEquals(10.0, price(source, "eth"));
+    }
+
+    @Test
+    void positiveSpeedLoopsOverTheRecordingSpan() throws Exception {
+        AtomicLong now = new AtomicLong(0L);
+        ReplayPriceSource source = new ReplayPriceSource(file, true, 1.0, now::get);
+
+        assertEquals(100.0, price(source, "btc"));
+        now.set(30_000); // dernier tick (31000)
+        assertEquals(103.0, price(source, "btc"));
+        now.set(30_001); // retour au début
+        assertEquals(100.0, price(source, "btc"));
+        now.set(30_001 + 10_000);
+        assertEquals(101.0, price(source, "btc"));
+    }
+
+    @Test
+    void missingFileIsDown() throws Exception {
+        ReplayPriceSource source = new ReplayPriceSource(new File(file.getParentFile(), "absent-" + System.nanoTime()), true, 1.0);
+        assertEquals(PriceSource.Health.DOWN, source.getHealth());
+        assertTrue(source.fetchUsd(List.of("btc")).get().isEmpty());
+    }
+}
@@ -0,0 +1,117 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeriesStoreTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long DAY = 86_400_000L;
+
+    private File dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestBukkit.install();
+        dir = Files.createTempDirectory("series").toFile();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static double priceAt(int i) {
+        return 30_000.0 + Math.sin(i / 50.0) * 250.0 + (i % 7) * 0.01;
+    }
+
+    private static List<long[]> readAll(SeriesStore store, long from, long to) {
+        List<long[]> out = new ArrayList<>();
+        store.read("BTC", from, to, (ts, price) -> out.add(new long[]{ts, Double.doubleToRawLongBits(price)}));
+        return out;
+    }
+
+    private static void assertPoints(List<long[]> points, long start, int from, int to) {
+        assertEquals(to - from, points.size());
+        for (int i = from; i < to; i++) {
+            long[] p = points.get(i - from);
+            assertEquals(start + i * MINUTE, p[0], "date du point " + i);
+            assertEquals(Double.doubleToRawLongBits(priceAt(i)), p[1], "prix du point " + i);
+        }
+    }
+
+    @Test
+    void sealedSegmentsReadBackExactly() throws IOException {
+        long start = System.currentTimeMillis() - 3 * DAY;
+        int n = 3 * 1440 - 10; // trois segments d'un jour : deux scellés, le dernier brut
+        SeriesStore store = new SeriesStore(dir, 30 * DAY);
+        store.open();
+        for (int i = 0; i < n; i++) store.append("BTC", start + i * MINUTE, priceAt(i));
+        store.flush();
+
+        File[] packed = new File(dir, "BTC").listFiles((d, name) -> name.endsWith(".gor"));
+        assertTrue(packed != null && packed.length == 2, "segments scellés attendus");
+
+        assertPoints(readAll(store, Long.MIN_VALUE, Long.MAX_VALUE), start, 0, n);
+        // Plage à cheval sur un segment scellé et le segment brut
+        assertPoints(readAll(store, start + 2000 * MINUTE, start + 3000 * MINUTE), start, 2000, 3001);
+
+        // Après redémarrage, les segments scellés sont relus depuis le disque
+        SeriesStore reopened = new SeriesStore(dir, 30 * DAY);
+        reopened.open();
+        assertPoints(readAll(reopened, Long.MIN_VALUE, Long.MAX_VALUE), start, 0, n);
+        assertPoints(readAll(reopened, start + 100 * MINUTE, start + 1500 * MINUTE), start, 100, 1501);
+        reopened.append("BTC", start + n * MINUTE, priceAt(n));
+        assertPoints(readAll(reopened, start + (n - 5) * MINUTE, Long.MAX_VALUE), start, n - 5, n + 1);
+    }
+
+    @Test
+    void insertMergesOlderPointsIntoEverySegment() throws IOException {
+        long start = System.currentTimeMillis() - 5 * DAY;
+        SeriesStore store = new SeriesStore(dir, 30 * DAY);
+        store.open();
+        // Points pairs en direct sur trois jours (deux segments scellés, un brut)
+        int n = 3 * 1440;
+        for (int i = 2 * 1440; i < 2 * 1440 + n; i += 2) store.append("BTC", start + i * MINUTE, priceAt(i));
+
+        // Points impairs dans ces trois jours, deux jours plus anciens que tout, et quelques doublons
+        List<Long> ts = new ArrayList<>();
+        for (int i = 0; i < 2 * 1440 + n; i++) {
+            if (i >= 2 * 1440 && i % 2 == 0 && i % 100 != 0) continue;
+            ts.add(start + i * MINUTE);
+        }
+        long[] insertTs = new long[ts.size()];
+        double[] insertPrices = new double[ts.size()];
+        for (int k = 0; k < insertTs.length; k++) {
+            insertTs[k] = ts.get(k);
+            int i = (int) ((insertTs[k] - start) / MINUTE);
+            insertPrices[k] = i >= 2 * 1440 && i % 2 == 0 ? -1.0 : priceAt(i);
+        }
+        int duplicates = n / 100;
+        assertEquals(insertTs.length - duplicates, store.insert("BTC", insertTs, insertPrices, insertTs.length));
+
+        // Les doublons gardent le point existant ; l'ajout en direct reprend après
+        assertPoints(readAll(store, Long.MIN_VALUE, Long.MAX_VALUE), start, 0, 2 * 1440 + n);
+        store.append("BTC", start + (2 * 1440 + n) * MINUTE, priceAt(2 * 1440 + n));
+        store.flush();
+
+        SeriesStore reopened = new SeriesStore(dir, 30 * DAY);
+        reopened.open();
+        assertPoints(readAll(reopened, Long.MIN_VALUE, Long.MAX_VALUE), start, 0, 2 * 1440 + n + 1);
+    }
+}
@@ -0,0 +1,45 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyntheticPriceSourceTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "io-test"));
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void latencyRunsOnTheGivenExecutor() throws Exception {
+        SyntheticPriceSource source = new SyntheticPriceSource(0.0, 20, executor);
+
+        String thread = source.fetchUsd(List.of("btc"))
+                .thenApply(prices -> Thread.currentThread().getName())
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals("io-test", thread);
+    }
+
+    @Test
+    void startingPriceIsStablePerSymbol() throws Exception {
+        SyntheticPriceSource source = new SyntheticPriceSource(0.0, 0, executor);
+
+        Map<String, Double> first = source.fetchUsd(List.of("btc")).get();
+        Map<String, Double> second = source.fetchUsd(List.of("btc")).get();
+
+        assertEquals(first.get("btc").doubleValue(), second.get("btc").doubleValue(), 1e-9);
+        assertTrue(first.get("btc") >= 1.0);
+    }
+}
@@ -0,0 +1,52 @@
+package fr.jachou.cryptocurrency.services;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.logging.Logger;
+
+/**
+ * Serveur Bukkit minimal pour les tests : seul getLogger() répond (les services y journalisent),
+ * les autres méthodes renvoient null / 0 / false.
+ */
+final class TestBukkit {
+
+    private static final Logger LOGGER = Logger.getLogger("CryptoTest");
+
+    private TestBukkit() {}
+
+    static synchronized void install() {
+        if (Bukkit.getServer() != null) return;
+        Server server = (Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[]{Server.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getLogger" -> LOGGER;
+                    case "getName", "getVersion", "getBukkitVersion" -> "test";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "TestServer";
+                    default -> defaultValue(method.getReturnType());
+                });
+        try {
+            // Bukkit.setServer() journalise des infos de build absentes en test : on pose le champ directement
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == double.class) return 0.0;
+        if (type == float.class) return 0.0f;
+        if (type == long.class) return 0L;
+        if (type == int.class) return 0;
+        if (type == short.class) return (short) 0;
+        return (byte) 0;
+    }
+}
@@ -0,0 +1,31 @@
+package fr.jachou.cryptocurrency.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SymbolTrieTest {
+
+    @Test
+    void lookupsIgnoreCase() {
+        SymbolTrie trie = new SymbolTrie();
+        for (String s : List.of("btc", "BCH", "eth", "1inch", "straße")) trie.add(s);
+
+        assertTrue(trie.contains("BTC"));
+        assertTrue(trie.contains("btc"));
+        assertTrue(trie.contains("bTc"));
+        assertTrue(trie.contains("1INCH"));
+        assertTrue(trie.contains("bch"));
+        assertTrue(trie.contains("STRASSE"));
+        assertTrue(trie.contains("straße"));
+        assertFalse(trie.contains("bt"));
+        assertFalse(trie.contains("btcx"));
+        assertFalse(trie.contains(""));
+        assertEquals(List.of("BCH", "BTC"), trie.complete("b", 10));
+        assertEquals(5, trie.size());
+    }
+}